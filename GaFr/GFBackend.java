@@ -0,0 +1,75 @@
+package GaFr;
+
+/** Internal use.
+  *
+  * Something which does what GFN does: draws, plays sounds, and so on.
+  * GFN passes every call on to the current backend (see GFN.setBackend()).
+  * Normally that's a GFWebBackend, which hands things to the JavaScript
+  * side in the browser.  GFHeadlessBackend runs on a plain JVM instead.
+  *
+  * The methods are the same as GFN's; see there.
+  */
+public interface GFBackend
+{
+  void initEarly ();
+  void begin (Object o, int width, int height);
+  void consoleLogObj (Object o);
+  void debugSet (Object o);
+
+  void setCanvasSize (int w, int h);
+  void getCanvasWidth ();
+  void getCanvasHeight ();
+
+  void gl_createTexture (GFTexture t);
+  void gl_deleteTexture (GFTexture t);
+  void gl_texParameteri (int a, int b, int c);
+  void gl_activeTexture (int i);
+  void gl_bindTexture (int i, GFTexture t);
+  void gl_texImage2D (int level, int internalFormat, int w, int h, int srcFormat, int pix[], int offset);
+  void gl_texSubImage2D (int level, int x, int y, int w, int h, int srcFormat, int[] pix, int offset, int rowLength);
+  void gl_generateMipmap (int i);
+
+  int gl_getUniformLocation (Gl.Program p, String name);
+  int gl_getAttributeLocation (Gl.Program p, String name);
+  int gl_getParameter (int pname);
+  void gl_uniform2f (int loc, float f1, float f2);
+  void gl_uniform1i (int loc, int i);
+  void gl_uniform1f (int loc, float f);
+  void gl_uniform3f (int loc, float f1, float f2, float f3);
+  void gl_uniform4f (int loc, float f1, float f2, float f3, float f4);
+  void gl_uniformfv (int loc, int components, float[] data, int offset, int count);
+  void gl_uniform1iv (int loc, int[] data, int offset, int count);
+  void gl_uniformMatrix3fv (int loc, float[] data, int offset);
+  void gl_useProgram (Gl.Program p);
+  void gl_createProgramFromSources (Gl.Program p, String vs, String fs);
+
+  void gl_clearColor (float r, float g, float b, float a);
+  void gl_clear (int f);
+
+  void gl_viewport (int x, int y, int w, int height);
+  void gl_viewportDefault ();
+
+  void stampSetup (int maxStamps, int maxTextures, float[] data);
+  void stampDraw (int numStamps, int numTextures);
+  void stampSetView (float a, float b, float tx, float c, float d, float ty);
+
+  void staticBatchUpload (GFStaticBatch b, int part, float[] data, int numStamps);
+  void staticBatchDraw (GFStaticBatch b, int part, int numStamps, int numTextures, float dx, float dy);
+  void staticBatchDelete (GFStaticBatch b);
+
+  void renderTargetCreate (GFTexture t, int w, int h);
+  void renderTargetBind (GFTexture t);
+  void renderTargetClear (float r, float g, float b, float a);
+  void renderTargetDelete (GFTexture t);
+
+  void loadSound (GaFr.GFSound sound, byte[] data, String mime);
+  void playSound (GaFr.GFSound sound);
+  void setVolume (GaFr.GFSound sound, float volume);
+  void pauseSound (GaFr.GFSound sound);
+  void stopSound (GaFr.GFSound sound);
+
+  boolean getGamepadData (int index, float[] axes, boolean[] buttons, int[] counts);
+
+  void setTitle (String s);
+  void setCursorStyle (String s);
+}
@@ -9,6 +9,7 @@ public class GFBoot
 
   public static void main (String[] args) throws IOException
   {
+    GFN.setBackend(createBackend(System.getProperty("gafr.backend", "web")));
     GFN.initEarly();
 
     basePath = args[0];
@@ -35,6 +36,36 @@ public class GFBoot
     }
 
     GFN.begin(game, game.WIDTH, game.HEIGHT);
+
+    if (GFN.getBackend() instanceof GFHeadlessBackend)
+    {
+      // There's no browser to call onDraw(), so run the frames ourselves
+      GFHeadlessBackend headless = (GFHeadlessBackend)GFN.getBackend();
+      headless.setLogLimit(0);
+      headless.runFrames(Integer.getInteger("gafr.frames", 600));
+      System.out.println(headless.getSummary());
+    }
+  }
+
+  /** Makes the backend with the given name.
+    *
+    * This is "web", "headless", "software", or the name of a class which
+    * implements GFBackend.
+    */
+  public static GFBackend createBackend (String name)
+  {
+    if (name.equals("web")) return new GFWebBackend();
+    if (name.equals("headless")) return new GFHeadlessBackend();
+    if (name.equals("software")) return new GFSoftwareBackend();
+    try
+    {
+      return (GFBackend)Class.forName(name).getDeclaredConstructor().newInstance();
+    }
+    catch (Exception e)
+    {
+      GFST.printStackTrace(e, "Exception creating backend " + name);
+      throw new RuntimeException(e);
+    }
   }
 
   public static String resolvePath (String fileName)
@@ -0,0 +1,186 @@
+package GaFr;
+
+/** A view onto the game world.
+  *
+  * Without a camera, stamps are drawn at exactly the x,y you give them.
+  * To scroll around a world bigger than the canvas, you can instead set
+  * a camera (see GFGame.setCamera()) and stamp things at their world
+  * coordinates.  The camera's position, zoom, and rotation are then
+  * applied by the graphics hardware, so moving the camera costs the same
+  * no matter how many stamps there are.
+  *
+  * With no zoom or rotation, a stamp at x,y shows up on the canvas at
+  * x-camera.x, y-camera.y.  Zooming and rotation happen around the pivot,
+  * which is the middle of the canvas unless you set it otherwise.
+  *
+  * You can switch cameras in the middle of a frame.  For parallax, for
+  * example, you might draw a distant background using a camera which
+  * moves at half the speed of the one you use for everything else.
+  * Everything stamped before the switch is drawn first, though, so if you
+  * are using layers, they are only sorted among stamps drawn with the
+  * same camera.
+  */
+public class GFCamera
+{
+  /** X position of the camera (the left edge of the view, when unzoomed). */
+  float x;
+  /** Y position of the camera (the top edge of the view, when unzoomed). */
+  float y;
+  float zoom = 1;
+  float angle;
+  // Note that the NaNs mean "center of the canvas"
+  float pivotX = Float.NaN;
+  float pivotY = Float.NaN;
+
+  float sin = 0;
+  float cos = 1;
+
+  public GFCamera ()
+  {
+  }
+
+  public GFCamera (float x, float y)
+  {
+    this.x = x;
+    this.y = y;
+  }
+
+  public float getX () { return x; }
+  public float getY () { return y; }
+  public float getZoom () { return zoom; }
+  public float getAngle () { return angle; }
+
+  /** Moves the camera to the given world position. */
+  public GFCamera moveTo (float x, float y)
+  {
+    this.x = x;
+    this.y = y;
+    changed();
+    return this;
+  }
+
+  /** Moves the camera by the given amount. */
+  public GFCamera moveRelative (float dx, float dy)
+  {
+    return moveTo(x + dx, y + dy);
+  }
+
+  /** Sets the zoom.
+    *
+    * 1 is normal size, 2 makes everything twice as large, and so on.
+    */
+  public GFCamera zoomTo (float zoom)
+  {
+    this.zoom = zoom;
+    changed();
+    return this;
+  }
+
+  /** Sets the camera's rotation (in radians). */
+  public GFCamera rotate (float angle)
+  {
+    this.angle = angle;
+    sin = (float)Math.sin(angle);
+    cos = (float)Math.cos(angle);
+    changed();
+    return this;
+  }
+
+  /** Rotates the camera relative to its current rotation (in radians). */
+  public GFCamera rotateRelative (float angle)
+  {
+    return rotate(this.angle + angle);
+  }
+
+  /** Sets the point on the canvas that zooming and rotation are around. */
+  public GFCamera setPivot (float x, float y)
+  {
+    pivotX = x;
+    pivotY = y;
+    changed();
+    return this;
+  }
+
+  /** Makes zooming and rotation be around the middle of the canvas.
+    *
+    * This is the default.
+    */
+  public GFCamera centerPivot ()
+  {
+    return setPivot(Float.NaN, Float.NaN);
+  }
+
+  /** Converts a point on the canvas to world coordinates (X part).
+    *
+    * This is handy for figuring out what the mouse is over.
+    */
+  public float toWorldX (float sx, float sy)
+  {
+    float px = pivotX(), py = pivotY();
+    float dx = (sx - px) / zoom, dy = (sy - py) / zoom;
+    return x + px + dx * cos + dy * sin;
+  }
+
+  /** Converts a point on the canvas to world coordinates (Y part). */
+  public float toWorldY (float sx, float sy)
+  {
+    float px = pivotX(), py = pivotY();
+    float dx = (sx - px) / zoom, dy = (sy - py) / zoom;
+    return y + py + dy * cos - dx * sin;
+  }
+
+  private float pivotX ()
+  {
+    if (pivotX == pivotX) return pivotX;
+    return (GFBoot.game == null) ? 0 : GFBoot.game.WIDTH * 0.5f;
+  }
+
+  private float pivotY ()
+  {
+    if (pivotY == pivotY) return pivotY;
+    return (GFBoot.game == null) ? 0 : GFBoot.game.HEIGHT * 0.5f;
+  }
+
+  /** Computes the world-to-canvas transform.
+    *
+    * The result is two rows of a 2x3 matrix: a,b,tx,c,d,ty, such that
+    * the canvas position of world point x,y is (a*x+b*y+tx, c*x+d*y+ty).
+    */
+  void computeView (float[] out)
+  {
+    float px = pivotX(), py = pivotY();
+    float a = zoom * cos, b = -zoom * sin;
+    float c = zoom * sin, d = zoom * cos;
+    float ox = x + px, oy = y + py;
+    out[0] = a;
+    out[1] = b;
+    out[2] = px - a * ox - b * oy;
+    out[3] = c;
+    out[4] = d;
+    out[5] = py - c * ox - d * oy;
+  }
+
+  /** Computes the bounding box of the world area which is visible.
+    *
+    * The result is stored as minx,miny,maxx,maxy.
+    */
+  void computeVisibleBounds (float width, float height, float[] out)
+  {
+    float x0 = toWorldX(0, 0), y0 = toWorldY(0, 0);
+    float x1 = toWorldX(width, 0), y1 = toWorldY(width, 0);
+    float x2 = toWorldX(0, height), y2 = toWorldY(0, height);
+    float x3 = toWorldX(width, height), y3 = toWorldY(width, height);
+    out[0] = Math.min(Math.min(x0, x1), Math.min(x2, x3));
+    out[1] = Math.min(Math.min(y0, y1), Math.min(y2, y3));
+    out[2] = Math.max(Math.max(x0, x1), Math.max(x2, x3));
+    out[3] = Math.max(Math.max(y0, y1), Math.max(y2, y3));
+  }
+
+  /** Lets the stamp manager know if this is the camera in use. */
+  private void changed ()
+  {
+    if (GFBoot.game == null) return;
+    GFStampManager m = GFBoot.game._stampManager;
+    if (m.camera == this) m.cameraChanged();
+  }
+}
@@ -16,11 +16,170 @@ public class GFGame
   /** Internal use. */
   public GFStampManager _stampManager;
 
+  // Set by markFrameClean()
+  private boolean frameClean = false;
+
   public GFGame ()
   {
     _stampManager = new GFStampManager();
   }
 
+  /** Sets how many stamps get drawn together.
+    *
+    * Stamps aren't drawn one at a time.  They are collected into a batch,
+    * and the whole batch is handed to the graphics hardware at once.  The
+    * batch starts out able to hold `initial` stamps and grows as needed,
+    * up to `max` stamps.  Past that, it gets drawn and started over.
+    * Bigger batches mean fewer (expensive) draw calls per frame at the
+    * cost of some memory.  If your game draws a lot of stamps (e.g., for
+    * particles), you may want to raise this.
+    *
+    * You can call this from your constructor or from onStartup().
+    */
+  public void setStampCapacity (int initial, int max)
+  {
+    _stampManager.setCapacity(initial, max);
+  }
+
+  /** Turns deferred stamping on or off.
+    *
+    * Normally, stamps are drawn in exactly the order you stamp them.  That
+    * means that if you alternate between stamps that use different
+    * textures (e.g., from lots of different image files), GaFr has to
+    * stop and draw whenever it runs out of texture slots, which is slow.
+    *
+    * With deferred stamping on, the whole frame is recorded and then
+    * drawn at the end, grouping stamps that share textures.  Stamps are
+    * only rearranged where it makes no visible difference (i.e., where
+    * they don't overlap).  Stamps drawn without a layer are treated as
+    * being on layer 0 (see GFStamp.stamp(int)), so they get sorted along
+    * with layered stamps rather than ending up beneath all of them.
+    */
+  public void setDeferredStamping (boolean on)
+  {
+    _stampManager.setDeferred(on);
+  }
+
+  /** Turns culling of off-screen stamps on or off.
+    *
+    * When this is on, stamps which would be drawn entirely outside the
+    * canvas (taking their rotation and pin into account) are skipped
+    * rather than being sent to the graphics hardware.  This is handy for,
+    * e.g., scrolling games which stamp the whole level every frame.
+    *
+    * @see GFGame#getCulledStampCount()
+    */
+  public void setStampCulling (boolean on)
+  {
+    _stampManager.culling = on;
+  }
+
+  /** Gets how many stamps were culled during the last frame.
+    *
+    * @see GFGame#setStampCulling(boolean)
+    */
+  public int getCulledStampCount ()
+  {
+    return _stampManager.stats.getFrameCount() == 0 ? 0
+         : _stampManager.stats.getCulled(0);
+  }
+
+  /** Gets statistics about how recent frames were drawn.
+    *
+    * @see GFRenderStats
+    */
+  public GFRenderStats getRenderStats ()
+  {
+    return _stampManager.stats;
+  }
+
+  /** Shows (or with null, hides) a summary of the render stats on screen.
+    *
+    * The summary is for the previous frame, and is drawn with the given
+    * font in the top left corner after everything else.  If you're using
+    * a camera, drawing it costs a couple of extra flushes.
+    *
+    * It works with setAutoSkipFrames(): the overlay isn't included when
+    * deciding whether a frame changed, so it doesn't stop frames from
+    * being skipped.  When a frame is skipped, though, the overlay isn't
+    * redrawn either, so it shows how many recent frames were skipped as
+    * of the last frame that was drawn.
+    *
+    * @see GFRenderStats
+    */
+  public void setStatsOverlay (GFFont font)
+  {
+    _stampManager.overlayFont = font;
+  }
+
+  /** Sets the camera used for drawing stamps.
+    *
+    * Pass null to go back to stamping directly in canvas coordinates.
+    * You can switch cameras during onDraw(), e.g., to draw parallax
+    * layers or a HUD which shouldn't scroll.
+    *
+    * @see GFCamera
+    */
+  public void setCamera (GFCamera camera)
+  {
+    _stampManager.setCamera(camera);
+  }
+
+  /** Gets the camera used for drawing stamps (or null if there isn't one). */
+  public GFCamera getCamera ()
+  {
+    return _stampManager.camera;
+  }
+
+  /** Skips drawing the next frame.
+    *
+    * If nothing on screen is going to change (e.g., on a menu which is
+    * just waiting for the user), call this (e.g., from onUpdate()), and
+    * the next frame won't be drawn at all -- onDraw() won't be called and
+    * whatever was on screen stays there.  This saves a lot of power,
+    * which laptop and phone users will appreciate.
+    *
+    * It only applies to one frame, so call it each time.
+    *
+    * @see GFGame#setAutoSkipFrames(boolean)
+    */
+  public void markFrameClean ()
+  {
+    frameClean = true;
+  }
+
+  /** Turns automatic skipping of unchanged frames on or off.
+    *
+    * When this is on, GaFr keeps track of exactly what gets stamped each
+    * frame, and if it's just the same as the last frame, it doesn't bother
+    * drawing it (the last frame just stays on screen).  This takes some
+    * extra work each frame, but on screens where things are mostly still,
+    * it's a big win for battery life.
+    *
+    * This only notices changes to what's stamped.  If you change a
+    * texture's pixels, or how it's filtered, call requestRedraw().  Frames
+    * which use static batches or render textures are always drawn.
+    *
+    * The stats overlay (see setStatsOverlay()) is left out when comparing
+    * frames, so you can use it to watch how often frames get skipped.
+    *
+    * @see GFGame#markFrameClean()
+    */
+  public void setAutoSkipFrames (boolean on)
+  {
+    _stampManager.autoSkip = on;
+    _stampManager.forceRedraw = true;
+  }
+
+  /** Makes sure the next frame is drawn even if it looks unchanged.
+    *
+    * @see GFGame#setAutoSkipFrames(boolean)
+    */
+  public void requestRedraw ()
+  {
+    _stampManager.forceRedraw = true;
+  }
+
   /** Called when the game is being initialized. */
   public void onStartup ()
   {
@@ -116,9 +275,14 @@ public class GFGame
     */
   public void onDrawBegin (int frameCount)
   {
+    if (frameClean)
+    {
+      frameClean = false;
+      return;
+    }
     if (!_stampManager.isEmpty())
       GFU.log("StampManager not empty at start of frame");
-    GFN.gl_clear(Gl.COLOR_BUFFER_BIT);
+    _stampManager.beginFrame(WIDTH, HEIGHT);
     try
     {
       onDraw(frameCount);
@@ -127,7 +291,7 @@ public class GFGame
     {
       GFST.printStackTrace(e, "In onDraw()");
     }
-    _stampManager.flush();
+    _stampManager.endFrame();
   }
 
   /** Called when you should draw a new frame.
@@ -0,0 +1,131 @@
+package GaFr;
+
+/** A shadow copy of some of the WebGL state.
+  *
+  * Every call into GFN is a trip from Java into JavaScript, which isn't
+  * free.  Lots of those calls (e.g., binding a texture which is already
+  * bound) don't actually change anything.  This keeps track of what the
+  * state is and only passes calls on to GFN when they would change it.
+  *
+  * It tracks the active texture unit, the texture bound to each unit,
+  * each texture's wrap and filter parameters (on the texture itself), and
+  * the current program.  Gl.Program keeps track of its uniforms' values
+  * in a similar way.
+  *
+  * If something changes the state without going through here (such as
+  * the JavaScript side of stamp drawing, which uses its own program), it
+  * needs to call one of the invalidate methods.
+  */
+public class GFGlState
+{
+  /** How many texture units are tracked. */
+  private static final int NUM_UNITS = 32;
+
+  private static int activeUnit = -1; // Unknown
+  private static final GFTexture[] bound = new GFTexture[NUM_UNITS];
+  private static Gl.Program program = null;
+
+  private static long saved = 0;
+
+  /** Number of calls which weren't made since they wouldn't change anything. */
+  public static long getSavedCalls ()
+  {
+    return saved;
+  }
+
+  /** Internal use.  Counts a call which was skipped elsewhere. */
+  static void countSaved ()
+  {
+    ++saved;
+  }
+
+  /** Forgets everything, so the next calls all go through. */
+  public static void invalidate ()
+  {
+    activeUnit = -1;
+    for (int i = 0; i < NUM_UNITS; ++i) bound[i] = null;
+    program = null;
+  }
+
+  /** Forgets which program is in use. */
+  public static void invalidateProgram ()
+  {
+    program = null;
+  }
+
+  /** Forgets anything about a texture (e.g., because it was deleted). */
+  public static void forgetTexture (GFTexture t)
+  {
+    for (int i = 0; i < NUM_UNITS; ++i)
+      if (bound[i] == t) bound[i] = null;
+    t.glWrapS = t.glWrapT = t.glMinFilter = t.glMagFilter = -1;
+  }
+
+  /** Like gl_activeTexture(); unit is Gl.TEXTURE0 + n. */
+  public static void activeTexture (int unit)
+  {
+    int u = unit - Gl.TEXTURE0;
+    if (u == activeUnit)
+    {
+      ++saved;
+      return;
+    }
+    activeUnit = (u >= 0 && u < NUM_UNITS) ? u : -1;
+    GFN.gl_activeTexture(unit);
+  }
+
+  /** Like gl_bindTexture() for TEXTURE_2D on the active unit. */
+  public static void bindTexture (GFTexture t)
+  {
+    if (activeUnit != -1)
+    {
+      if (bound[activeUnit] == t)
+      {
+        ++saved;
+        return;
+      }
+      bound[activeUnit] = t;
+    }
+    GFN.gl_bindTexture(Gl.TEXTURE_2D, t);
+  }
+
+  /** Like gl_texParameteri() for TEXTURE_2D.
+    *
+    * The texture must be the one bound to the active unit.
+    */
+  public static void texParameteri (GFTexture t, int pname, int value)
+  {
+    switch (pname)
+    {
+      case Gl.TEXTURE_WRAP_S:
+        if (t.glWrapS == value) { ++saved; return; }
+        t.glWrapS = value;
+        break;
+      case Gl.TEXTURE_WRAP_T:
+        if (t.glWrapT == value) { ++saved; return; }
+        t.glWrapT = value;
+        break;
+      case Gl.TEXTURE_MIN_FILTER:
+        if (t.glMinFilter == value) { ++saved; return; }
+        t.glMinFilter = value;
+        break;
+      case Gl.TEXTURE_MAG_FILTER:
+        if (t.glMagFilter == value) { ++saved; return; }
+        t.glMagFilter = value;
+        break;
+    }
+    GFN.gl_texParameteri(Gl.TEXTURE_2D, pname, value);
+  }
+
+  /** Like gl_useProgram(). */
+  public static void useProgram (Gl.Program p)
+  {
+    if (p == program)
+    {
+      ++saved;
+      return;
+    }
+    program = p;
+    GFN.gl_useProgram(p);
+  }
+}
@@ -0,0 +1,495 @@
+package GaFr;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** A backend which runs on a plain JVM, with no browser at all.
+  *
+  * Nothing is actually drawn or played.  Instead, each call is counted,
+  * and (up to a limit) recorded in a command log which you can look at
+  * afterwards.  This lets you run a game on, e.g., a build server for a
+  * number of frames, check what it asked to have drawn, and see how much
+  * CPU time it takes.
+  *
+  * To use it, run GFBoot with -Dgafr.backend=headless.  Instead of
+  * starting the usual frame loop, it runs -Dgafr.frames frames (600 by
+  * default) as fast as it can and prints a summary.  You can also make
+  * one yourself and pass it to GFN.setBackend() before doing anything
+  * else, and then call runFrames().
+  *
+  * Arrays in the log are the very arrays which were passed in, except for
+  * the stamps for stampDraw, which are copied (since the stamp manager
+  * reuses its array).  Logging lots of frames takes lots of memory, so
+  * only the most recent commands are kept (see setLogLimit()).
+  */
+public class GFHeadlessBackend implements GFBackend
+{
+  /** The calls which can be made; these are named after GFN's methods. */
+  public enum Op
+  {
+    initEarly, begin, consoleLogObj, debugSet,
+    setCanvasSize, getCanvasWidth, getCanvasHeight,
+    gl_createTexture, gl_deleteTexture, gl_texParameteri, gl_activeTexture, gl_bindTexture,
+    gl_texImage2D, gl_texSubImage2D, gl_generateMipmap,
+    gl_getUniformLocation, gl_getAttributeLocation, gl_getParameter,
+    gl_uniform2f, gl_uniform1i, gl_uniform1f, gl_uniform3f, gl_uniform4f,
+    gl_uniformfv, gl_uniform1iv, gl_uniformMatrix3fv,
+    gl_useProgram, gl_createProgramFromSources,
+    gl_clearColor, gl_clear, gl_viewport, gl_viewportDefault,
+    stampSetup, stampDraw, stampSetView,
+    staticBatchUpload, staticBatchDraw, staticBatchDelete,
+    renderTargetCreate, renderTargetBind, renderTargetClear, renderTargetDelete,
+    loadSound, playSound, setVolume, pauseSound, stopSound,
+    getGamepadData, setTitle, setCursorStyle
+  }
+
+  /** One call in the command log. */
+  public static class Command
+  {
+    /** Which call it was. */
+    public final Op op;
+    /** The arguments it was called with. */
+    public final Object[] args;
+    /** The frame it was made during (0 is before the first frame). */
+    public final int frame;
+
+    Command (Op op, Object[] args, int frame)
+    {
+      this.op = op;
+      this.args = args;
+      this.frame = frame;
+    }
+
+    @Override
+    public String toString ()
+    {
+      StringBuilder sb = new StringBuilder();
+      sb.append(op).append('(');
+      for (int i = 0; i < args.length; ++i)
+      {
+        if (i != 0) sb.append(", ");
+        Object a = args[i];
+        if (a instanceof float[]) sb.append("float[").append(((float[])a).length).append(']');
+        else if (a instanceof int[]) sb.append("int[").append(((int[])a).length).append(']');
+        else if (a instanceof byte[]) sb.append("byte[").append(((byte[])a).length).append(']');
+        else if (a instanceof boolean[]) sb.append("boolean[").append(((boolean[])a).length).append(']');
+        else if (a instanceof String) sb.append('"').append(a).append('"');
+        else sb.append(a);
+      }
+      return sb.append(')').toString();
+    }
+  }
+
+  /** What gl_getParameter(Gl.MAX_TEXTURE_SIZE) returns. */
+  public int maxTextureSize = 4096;
+
+  /** Whether consoleLogObj() prints to System.out. */
+  public boolean printLogs = true;
+
+  private final long[] counts = new long[Op.values().length];
+  private final ArrayDeque<Command> log = new ArrayDeque<>();
+  private int logLimit = 100000;
+
+  private int frame = 0;
+  private long frameNanos = 0;
+  private int framesTimed = 0;
+
+  private int width, height;
+  private int nextUniform = 0;
+  private int nextAttribute = 0;
+  private float[] stampData;
+  private long stampsDrawn = 0;
+
+  /** Sets the most commands which are kept in the log.
+    *
+    * Older commands are thrown away to make room.  0 turns logging off
+    * (calls are still counted), which is what you want when timing.
+    */
+  public void setLogLimit (int limit)
+  {
+    logLimit = Math.max(0, limit);
+    while (log.size() > logLimit) log.removeFirst();
+  }
+
+  /** Gets a copy of the command log, oldest first. */
+  public List<Command> getLog ()
+  {
+    return new ArrayList<>(log);
+  }
+
+  /** Gets the commands in the log which were made during a given frame. */
+  public List<Command> getLog (int frame)
+  {
+    ArrayList<Command> r = new ArrayList<>();
+    for (Command c : log)
+      if (c.frame == frame) r.add(c);
+    return r;
+  }
+
+  /** Empties the command log. */
+  public void clearLog ()
+  {
+    log.clear();
+  }
+
+  /** Gets how many times a call has been made. */
+  public long getCount (Op op)
+  {
+    return counts[op.ordinal()];
+  }
+
+  /** Gets the total number of stamps drawn (including static batches). */
+  public long getStampsDrawn ()
+  {
+    return stampsDrawn;
+  }
+
+  /** Sets all the counts back to zero. */
+  public void resetCounts ()
+  {
+    Arrays.fill(counts, 0);
+    stampsDrawn = 0;
+    frameNanos = 0;
+    framesTimed = 0;
+  }
+
+  /** Gets the number of the current frame (0 before the first one). */
+  public int getFrame ()
+  {
+    return frame;
+  }
+
+  /** Gets the canvas width the game asked for. */
+  public int getWidth ()
+  {
+    return width;
+  }
+
+  /** Gets the canvas height the game asked for. */
+  public int getHeight ()
+  {
+    return height;
+  }
+
+  /** Runs the game in GFBoot.game for some frames.
+    *
+    * Each frame is just like one in the browser (see GFBoot.onDraw()),
+    * except that they're run back to back as fast as possible.
+    */
+  public void runFrames (int n)
+  {
+    for (int i = 0; i < n; ++i)
+    {
+      ++frame;
+      long start = System.nanoTime();
+      GFBoot.onDraw();
+      frameNanos += System.nanoTime() - start;
+      ++framesTimed;
+    }
+  }
+
+  /** Gets the average CPU time per frame run by runFrames(), in milliseconds. */
+  public double getAverageFrameMillis ()
+  {
+    return framesTimed == 0 ? 0 : frameNanos / 1e6 / framesTimed;
+  }
+
+  /** Gets a description of the frames run and the calls made. */
+  public String getSummary ()
+  {
+    StringBuilder sb = new StringBuilder();
+    sb.append("frames ").append(framesTimed);
+    sb.append(String.format("  ms/frame %.3f", getAverageFrameMillis()));
+    sb.append("  stamps ").append(stampsDrawn);
+    Op[] ops = Op.values();
+    Integer[] order = new Integer[ops.length];
+    for (int i = 0; i < ops.length; ++i) order[i] = i;
+    Arrays.sort(order, (a, b) -> Long.compare(counts[b], counts[a]));
+    for (int i : order)
+    {
+      if (counts[i] == 0) break;
+      sb.append('\n').append(ops[i]).append(' ').append(counts[i]);
+    }
+    return sb.toString();
+  }
+
+  // Counts a call, and returns whether it should be logged
+  private boolean count (Op op)
+  {
+    ++counts[op.ordinal()];
+    return logLimit != 0;
+  }
+
+  private void log (Op op, Object... args)
+  {
+    if (log.size() >= logLimit) log.removeFirst();
+    log.addLast(new Command(op, args, frame));
+  }
+
+  public void initEarly ()
+  {
+    if (count(Op.initEarly)) log(Op.initEarly);
+  }
+
+  public void begin (Object o, int width, int height)
+  {
+    if (count(Op.begin)) log(Op.begin, o, width, height);
+    this.width = width;
+    this.height = height;
+  }
+
+  public void consoleLogObj (Object o)
+  {
+    if (count(Op.consoleLogObj)) log(Op.consoleLogObj, o);
+    if (printLogs) System.out.println(o);
+  }
+
+  public void debugSet (Object o)
+  {
+    if (count(Op.debugSet)) log(Op.debugSet, o);
+  }
+
+  public void setCanvasSize (int w, int h)
+  {
+    if (count(Op.setCanvasSize)) log(Op.setCanvasSize, w, h);
+    width = w;
+    height = h;
+  }
+
+  public void getCanvasWidth ()
+  {
+    if (count(Op.getCanvasWidth)) log(Op.getCanvasWidth);
+  }
+
+  public void getCanvasHeight ()
+  {
+    if (count(Op.getCanvasHeight)) log(Op.getCanvasHeight);
+  }
+
+  public void gl_createTexture (GFTexture t)
+  {
+    if (count(Op.gl_createTexture)) log(Op.gl_createTexture, t);
+  }
+
+  public void gl_deleteTexture (GFTexture t)
+  {
+    if (count(Op.gl_deleteTexture)) log(Op.gl_deleteTexture, t);
+  }
+
+  public void gl_texParameteri (int a, int b, int c)
+  {
+    if (count(Op.gl_texParameteri)) log(Op.gl_texParameteri, a, b, c);
+  }
+
+  public void gl_activeTexture (int i)
+  {
+    if (count(Op.gl_activeTexture)) log(Op.gl_activeTexture, i);
+  }
+
+  public void gl_bindTexture (int i, GFTexture t)
+  {
+    if (count(Op.gl_bindTexture)) log(Op.gl_bindTexture, i, t);
+  }
+
+  public void gl_texImage2D (int level, int internalFormat, int w, int h, int srcFormat, int pix[], int offset)
+  {
+    if (count(Op.gl_texImage2D)) log(Op.gl_texImage2D, level, internalFormat, w, h, srcFormat, pix, offset);
+  }
+
+  public void gl_texSubImage2D (int level, int x, int y, int w, int h, int srcFormat, int[] pix, int offset, int rowLength)
+  {
+    if (count(Op.gl_texSubImage2D)) log(Op.gl_texSubImage2D, level, x, y, w, h, srcFormat, pix, offset, rowLength);
+  }
+
+  public void gl_generateMipmap (int i)
+  {
+    if (count(Op.gl_generateMipmap)) log(Op.gl_generateMipmap, i);
+  }
+
+  public int gl_getUniformLocation (Gl.Program p, String name)
+  {
+    if (count(Op.gl_getUniformLocation)) log(Op.gl_getUniformLocation, p, name);
+    return nextUniform++;
+  }
+
+  public int gl_getAttributeLocation (Gl.Program p, String name)
+  {
+    if (count(Op.gl_getAttributeLocation)) log(Op.gl_getAttributeLocation, p, name);
+    return nextAttribute++;
+  }
+
+  public int gl_getParameter (int pname)
+  {
+    if (count(Op.gl_getParameter)) log(Op.gl_getParameter, pname);
+    return pname == Gl.MAX_TEXTURE_SIZE ? maxTextureSize : 0;
+  }
+
+  public void gl_uniform2f (int loc, float f1, float f2)
+  {
+    if (count(Op.gl_uniform2f)) log(Op.gl_uniform2f, loc, f1, f2);
+  }
+
+  public void gl_uniform1i (int loc, int i)
+  {
+    if (count(Op.gl_uniform1i)) log(Op.gl_uniform1i, loc, i);
+  }
+
+  public void gl_uniform1f (int loc, float f)
+  {
+    if (count(Op.gl_uniform1f)) log(Op.gl_uniform1f, loc, f);
+  }
+
+  public void gl_uniform3f (int loc, float f1, float f2, float f3)
+  {
+    if (count(Op.gl_uniform3f)) log(Op.gl_uniform3f, loc, f1, f2, f3);
+  }
+
+  public void gl_uniform4f (int loc, float f1, float f2, float f3, float f4)
+  {
+    if (count(Op.gl_uniform4f)) log(Op.gl_uniform4f, loc, f1, f2, f3, f4);
+  }
+
+  public void gl_uniformfv (int loc, int components, float[] data, int offset, int count)
+  {
+    if (count(Op.gl_uniformfv)) log(Op.gl_uniformfv, loc, components, data, offset, count);
+  }
+
+  public void gl_uniform1iv (int loc, int[] data, int offset, int count)
+  {
+    if (count(Op.gl_uniform1iv)) log(Op.gl_uniform1iv, loc, data, offset, count);
+  }
+
+  public void gl_uniformMatrix3fv (int loc, float[] data, int offset)
+  {
+    if (count(Op.gl_uniformMatrix3fv)) log(Op.gl_uniformMatrix3fv, loc, data, offset);
+  }
+
+  public void gl_useProgram (Gl.Program p)
+  {
+    if (count(Op.gl_useProgram)) log(Op.gl_useProgram, p);
+  }
+
+  public void gl_createProgramFromSources (Gl.Program p, String vs, String fs)
+  {
+    if (count(Op.gl_createProgramFromSources)) log(Op.gl_createProgramFromSources, p, vs, fs);
+  }
+
+  public void gl_clearColor (float r, float g, float b, float a)
+  {
+    if (count(Op.gl_clearColor)) log(Op.gl_clearColor, r, g, b, a);
+  }
+
+  public void gl_clear (int f)
+  {
+    if (count(Op.gl_clear)) log(Op.gl_clear, f);
+  }
+
+  public void gl_viewport (int x, int y, int w, int height)
+  {
+    if (count(Op.gl_viewport)) log(Op.gl_viewport, x, y, w, height);
+  }
+
+  public void gl_viewportDefault ()
+  {
+    if (count(Op.gl_viewportDefault)) log(Op.gl_viewportDefault);
+  }
+
+  public void stampSetup (int maxStamps, int maxTextures, float[] data)
+  {
+    if (count(Op.stampSetup)) log(Op.stampSetup, maxStamps, maxTextures, data);
+    stampData = data;
+  }
+
+  public void stampDraw (int numStamps, int numTextures)
+  {
+    if (count(Op.stampDraw))
+    {
+      float[] data = Arrays.copyOf(stampData, numStamps * GFStampManager.RECORD_SIZE);
+      log(Op.stampDraw, numStamps, numTextures, data);
+    }
+    stampsDrawn += numStamps;
+  }
+
+  public void stampSetView (float a, float b, float tx, float c, float d, float ty)
+  {
+    if (count(Op.stampSetView)) log(Op.stampSetView, a, b, tx, c, d, ty);
+  }
+
+  public void staticBatchUpload (GFStaticBatch b, int part, float[] data, int numStamps)
+  {
+    if (count(Op.staticBatchUpload)) log(Op.staticBatchUpload, b, part, data, numStamps);
+  }
+
+  public void staticBatchDraw (GFStaticBatch b, int part, int numStamps, int numTextures, float dx, float dy)
+  {
+    if (count(Op.staticBatchDraw)) log(Op.staticBatchDraw, b, part, numStamps, numTextures, dx, dy);
+    stampsDrawn += numStamps;
+  }
+
+  public void staticBatchDelete (GFStaticBatch b)
+  {
+    if (count(Op.staticBatchDelete)) log(Op.staticBatchDelete, b);
+  }
+
+  public void renderTargetCreate (GFTexture t, int w, int h)
+  {
+    if (count(Op.renderTargetCreate)) log(Op.renderTargetCreate, t, w, h);
+  }
+
+  public void renderTargetBind (GFTexture t)
+  {
+    if (count(Op.renderTargetBind)) log(Op.renderTargetBind, t);
+  }
+
+  public void renderTargetClear (float r, float g, float b, float a)
+  {
+    if (count(Op.renderTargetClear)) log(Op.renderTargetClear, r, g, b, a);
+  }
+
+  public void renderTargetDelete (GFTexture t)
+  {
+    if (count(Op.renderTargetDelete)) log(Op.renderTargetDelete, t);
+  }
+
+  public void loadSound (GaFr.GFSound sound, byte[] data, String mime)
+  {
+    if (count(Op.loadSound)) log(Op.loadSound, sound, data, mime);
+  }
+
+  public void playSound (GaFr.GFSound sound)
+  {
+    if (count(Op.playSound)) log(Op.playSound, sound);
+  }
+
+  public void setVolume (GaFr.GFSound sound, float volume)
+  {
+    if (count(Op.setVolume)) log(Op.setVolume, sound, volume);
+  }
+
+  public void pauseSound (GaFr.GFSound sound)
+  {
+    if (count(Op.pauseSound)) log(Op.pauseSound, sound);
+  }
+
+  public void stopSound (GaFr.GFSound sound)
+  {
+    if (count(Op.stopSound)) log(Op.stopSound, sound);
+  }
+
+  public boolean getGamepadData (int index, float[] axes, boolean[] buttons, int[] counts)
+  {
+    if (count(Op.getGamepadData)) log(Op.getGamepadData, index, axes, buttons, counts);
+    return false; // No gamepads here
+  }
+
+  public void setTitle (String s)
+  {
+    if (count(Op.setTitle)) log(Op.setTitle, s);
+  }
+
+  public void setCursorStyle (String s)
+  {
+    if (count(Op.setCursorStyle)) log(Op.setCursorStyle, s);
+  }
+}
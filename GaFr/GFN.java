@@ -4,50 +4,287 @@ package GaFr;
   *
   * These are functions implemented by the native layer (e.g., JavaScript).
   * They are generally not meant to be called directly.
+  *
+  * Each call is passed on to a GFBackend.  In the browser that's a
+  * GFWebBackend, which calls the real natives in GFNative.  GFBoot picks
+  * a different one if the "gafr.backend" system property says so (e.g.,
+  * -Dgafr.backend=headless for GFHeadlessBackend), and it can also be set
+  * with setBackend() before anything else touches GFN.
   */
 public class GFN
 {
-  public static native void initEarly ();
-  public static native void begin (Object o, int width, int height);
-  public static native void consoleLogObj (Object o);
-  public static native void debugSet (Object o);
-
-  public static native void setCanvasSize (int w, int h);
-  public static native void getCanvasWidth ();
-  public static native void getCanvasHeight ();
-
-  public static native void gl_createTexture (GFTexture t);
-  public static native void gl_texParameteri (int a, int b, int c);
-  public static native void gl_activeTexture (int i);
-  public static native void gl_bindTexture (int i, GFTexture t);
-  public static native void gl_texImage2D (int level, int internalFormat, int w, int h, int srcFormat, int pix[], int offset);
-  public static native void gl_generateMipmap (int i);
-
-  public static native int gl_getUniformLocation (Gl.Program p, String name);
-  public static native int gl_getAttributeLocation (Gl.Program p, String name);
-  public static native int gl_getParameter (int pname);
-  public static native void gl_uniform2f (int loc, float f1, float f2);
-  public static native void gl_uniform1i (int loc, int i);
-  public static native void gl_useProgram (Gl.Program p);
-  public static native void gl_createProgramFromSources (Gl.Program p, String vs, String fs);
-
-  public static native void gl_clearColor (float r, float g, float b, float a);
-  public static native void gl_clear (int f);
-
-  public static native void gl_viewport (int x, int y, int w, int height);
-  public static native void gl_viewportDefault ();
-
-  public static native void stampSetup (int maxStamps, int maxTextures, float[] vinfo, float[] tcs, byte[] tex, int[] tints);
-  public static native void stampDraw (int numStamps, int numTextures);
-
-  public static native void loadSound (GaFr.GFSound sound, byte[] data, String mime);
-  public static native void playSound (GaFr.GFSound sound);
-  public static native void setVolume (GaFr.GFSound sound, float volume);
-  public static native void pauseSound (GaFr.GFSound sound);
-  public static native void stopSound (GaFr.GFSound sound);
-
-  public static native boolean getGamepadData (int index, float[] axes, boolean[] buttons, int[] counts);
-
-  public static native void setTitle (String s);
-  public static native void setCursorStyle (String s);
+  private static GFBackend backend = new GFWebBackend();
+
+  /** Gets the backend calls are passed on to. */
+  public static GFBackend getBackend ()
+  {
+    return backend;
+  }
+
+  /** Sets the backend calls are passed on to.
+    *
+    * This should be done before anything else (including loading
+    * textures, since GFTexture asks the backend for MAX_TEXTURE_SIZE).
+    */
+  public static void setBackend (GFBackend b)
+  {
+    if (b == null) throw new IllegalArgumentException("Backend can't be null");
+    backend = b;
+  }
+
+  public static void initEarly ()
+  {
+    backend.initEarly();
+  }
+
+  public static void begin (Object o, int width, int height)
+  {
+    backend.begin(o, width, height);
+  }
+
+  public static void consoleLogObj (Object o)
+  {
+    backend.consoleLogObj(o);
+  }
+
+  public static void debugSet (Object o)
+  {
+    backend.debugSet(o);
+  }
+
+  public static void setCanvasSize (int w, int h)
+  {
+    backend.setCanvasSize(w, h);
+  }
+
+  public static void getCanvasWidth ()
+  {
+    backend.getCanvasWidth();
+  }
+
+  public static void getCanvasHeight ()
+  {
+    backend.getCanvasHeight();
+  }
+
+  public static void gl_createTexture (GFTexture t)
+  {
+    backend.gl_createTexture(t);
+  }
+
+  public static void gl_deleteTexture (GFTexture t)
+  {
+    backend.gl_deleteTexture(t);
+  }
+
+  public static void gl_texParameteri (int a, int b, int c)
+  {
+    backend.gl_texParameteri(a, b, c);
+  }
+
+  public static void gl_activeTexture (int i)
+  {
+    backend.gl_activeTexture(i);
+  }
+
+  public static void gl_bindTexture (int i, GFTexture t)
+  {
+    backend.gl_bindTexture(i, t);
+  }
+
+  public static void gl_texImage2D (int level, int internalFormat, int w, int h, int srcFormat, int pix[], int offset)
+  {
+    backend.gl_texImage2D(level, internalFormat, w, h, srcFormat, pix, offset);
+  }
+
+  /** Replaces a rectangle of the bound texture.
+    *
+    * The w by h rectangle starts at offset in pix, whose rows are
+    * rowLength pixels apart (so it can come straight out of a bigger
+    * image).
+    */
+  public static void gl_texSubImage2D (int level, int x, int y, int w, int h, int srcFormat, int[] pix, int offset, int rowLength)
+  {
+    backend.gl_texSubImage2D(level, x, y, w, h, srcFormat, pix, offset, rowLength);
+  }
+
+  public static void gl_generateMipmap (int i)
+  {
+    backend.gl_generateMipmap(i);
+  }
+
+  public static int gl_getUniformLocation (Gl.Program p, String name)
+  {
+    return backend.gl_getUniformLocation(p, name);
+  }
+
+  public static int gl_getAttributeLocation (Gl.Program p, String name)
+  {
+    return backend.gl_getAttributeLocation(p, name);
+  }
+
+  public static int gl_getParameter (int pname)
+  {
+    return backend.gl_getParameter(pname);
+  }
+
+  public static void gl_uniform2f (int loc, float f1, float f2)
+  {
+    backend.gl_uniform2f(loc, f1, f2);
+  }
+
+  public static void gl_uniform1i (int loc, int i)
+  {
+    backend.gl_uniform1i(loc, i);
+  }
+
+  public static void gl_uniform1f (int loc, float f)
+  {
+    backend.gl_uniform1f(loc, f);
+  }
+
+  public static void gl_uniform3f (int loc, float f1, float f2, float f3)
+  {
+    backend.gl_uniform3f(loc, f1, f2, f3);
+  }
+
+  public static void gl_uniform4f (int loc, float f1, float f2, float f3, float f4)
+  {
+    backend.gl_uniform4f(loc, f1, f2, f3, f4);
+  }
+
+  public static void gl_uniformfv (int loc, int components, float[] data, int offset, int count)
+  {
+    backend.gl_uniformfv(loc, components, data, offset, count);
+  }
+
+  public static void gl_uniform1iv (int loc, int[] data, int offset, int count)
+  {
+    backend.gl_uniform1iv(loc, data, offset, count);
+  }
+
+  public static void gl_uniformMatrix3fv (int loc, float[] data, int offset)
+  {
+    backend.gl_uniformMatrix3fv(loc, data, offset);
+  }
+
+  public static void gl_useProgram (Gl.Program p)
+  {
+    backend.gl_useProgram(p);
+  }
+
+  public static void gl_createProgramFromSources (Gl.Program p, String vs, String fs)
+  {
+    backend.gl_createProgramFromSources(p, vs, fs);
+  }
+
+  public static void gl_clearColor (float r, float g, float b, float a)
+  {
+    backend.gl_clearColor(r, g, b, a);
+  }
+
+  public static void gl_clear (int f)
+  {
+    backend.gl_clear(f);
+  }
+
+  public static void gl_viewport (int x, int y, int w, int height)
+  {
+    backend.gl_viewport(x, y, w, height);
+  }
+
+  public static void gl_viewportDefault ()
+  {
+    backend.gl_viewportDefault();
+  }
+
+  public static void stampSetup (int maxStamps, int maxTextures, float[] data)
+  {
+    backend.stampSetup(maxStamps, maxTextures, data);
+  }
+
+  public static void stampDraw (int numStamps, int numTextures)
+  {
+    backend.stampDraw(numStamps, numTextures);
+  }
+
+  public static void stampSetView (float a, float b, float tx, float c, float d, float ty)
+  {
+    backend.stampSetView(a, b, tx, c, d, ty);
+  }
+
+  public static void staticBatchUpload (GFStaticBatch b, int part, float[] data, int numStamps)
+  {
+    backend.staticBatchUpload(b, part, data, numStamps);
+  }
+
+  public static void staticBatchDraw (GFStaticBatch b, int part, int numStamps, int numTextures, float dx, float dy)
+  {
+    backend.staticBatchDraw(b, part, numStamps, numTextures, dx, dy);
+  }
+
+  public static void staticBatchDelete (GFStaticBatch b)
+  {
+    backend.staticBatchDelete(b);
+  }
+
+  public static void renderTargetCreate (GFTexture t, int w, int h)
+  {
+    backend.renderTargetCreate(t, w, h);
+  }
+
+  public static void renderTargetBind (GFTexture t)
+  {
+    backend.renderTargetBind(t);
+  }
+
+  public static void renderTargetClear (float r, float g, float b, float a)
+  {
+    backend.renderTargetClear(r, g, b, a);
+  }
+
+  public static void renderTargetDelete (GFTexture t)
+  {
+    backend.renderTargetDelete(t);
+  }
+
+  public static void loadSound (GaFr.GFSound sound, byte[] data, String mime)
+  {
+    backend.loadSound(sound, data, mime);
+  }
+
+  public static void playSound (GaFr.GFSound sound)
+  {
+    backend.playSound(sound);
+  }
+
+  public static void setVolume (GaFr.GFSound sound, float volume)
+  {
+    backend.setVolume(sound, volume);
+  }
+
+  public static void pauseSound (GaFr.GFSound sound)
+  {
+    backend.pauseSound(sound);
+  }
+
+  public static void stopSound (GaFr.GFSound sound)
+  {
+    backend.stopSound(sound);
+  }
+
+  public static boolean getGamepadData (int index, float[] axes, boolean[] buttons, int[] counts)
+  {
+    return backend.getGamepadData(index, axes, buttons, counts);
+  }
+
+  public static void setTitle (String s)
+  {
+    backend.setTitle(s);
+  }
+
+  public static void setCursorStyle (String s)
+  {
+    backend.setCursorStyle(s);
+  }
 }
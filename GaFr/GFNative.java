@@ -0,0 +1,72 @@
+package GaFr;
+
+/** Internal use.
+  *
+  * These are the functions implemented in JavaScript (in
+  * native/GaFr/GFNative_native.js).  They're only called through
+  * GFWebBackend; everything else should go through GFN.
+  */
+public class GFNative
+{
+  public static native void initEarly ();
+  public static native void begin (Object o, int width, int height);
+  public static native void consoleLogObj (Object o);
+  public static native void debugSet (Object o);
+
+  public static native void setCanvasSize (int w, int h);
+  public static native void getCanvasWidth ();
+  public static native void getCanvasHeight ();
+
+  public static native void gl_createTexture (GFTexture t);
+  public static native void gl_deleteTexture (GFTexture t);
+  public static native void gl_texParameteri (int a, int b, int c);
+  public static native void gl_activeTexture (int i);
+  public static native void gl_bindTexture (int i, GFTexture t);
+  public static native void gl_texImage2D (int level, int internalFormat, int w, int h, int srcFormat, int pix[], int offset);
+  public static native void gl_texSubImage2D (int level, int x, int y, int w, int h, int srcFormat, int[] pix, int offset, int rowLength);
+  public static native void gl_generateMipmap (int i);
+
+  public static native int gl_getUniformLocation (Gl.Program p, String name);
+  public static native int gl_getAttributeLocation (Gl.Program p, String name);
+  public static native int gl_getParameter (int pname);
+  public static native void gl_uniform2f (int loc, float f1, float f2);
+  public static native void gl_uniform1i (int loc, int i);
+  public static native void gl_uniform1f (int loc, float f);
+  public static native void gl_uniform3f (int loc, float f1, float f2, float f3);
+  public static native void gl_uniform4f (int loc, float f1, float f2, float f3, float f4);
+  public static native void gl_uniformfv (int loc, int components, float[] data, int offset, int count);
+  public static native void gl_uniform1iv (int loc, int[] data, int offset, int count);
+  public static native void gl_uniformMatrix3fv (int loc, float[] data, int offset);
+  public static native void gl_useProgram (Gl.Program p);
+  public static native void gl_createProgramFromSources (Gl.Program p, String vs, String fs);
+
+  public static native void gl_clearColor (float r, float g, float b, float a);
+  public static native void gl_clear (int f);
+
+  public static native void gl_viewport (int x, int y, int w, int height);
+  public static native void gl_viewportDefault ();
+
+  public static native void stampSetup (int maxStamps, int maxTextures, float[] data);
+  public static native void stampDraw (int numStamps, int numTextures);
+  public static native void stampSetView (float a, float b, float tx, float c, float d, float ty);
+
+  public static native void staticBatchUpload (GFStaticBatch b, int part, float[] data, int numStamps);
+  public static native void staticBatchDraw (GFStaticBatch b, int part, int numStamps, int numTextures, float dx, float dy);
+  public static native void staticBatchDelete (GFStaticBatch b);
+
+  public static native void renderTargetCreate (GFTexture t, int w, int h);
+  public static native void renderTargetBind (GFTexture t);
+  public static native void renderTargetClear (float r, float g, float b, float a);
+  public static native void renderTargetDelete (GFTexture t);
+
+  public static native void loadSound (GaFr.GFSound sound, byte[] data, String mime);
+  public static native void playSound (GaFr.GFSound sound);
+  public static native void setVolume (GaFr.GFSound sound, float volume);
+  public static native void pauseSound (GaFr.GFSound sound);
+  public static native void stopSound (GaFr.GFSound sound);
+
+  public static native boolean getGamepadData (int index, float[] axes, boolean[] buttons, int[] counts);
+
+  public static native void setTitle (String s);
+  public static native void setCursorStyle (String s);
+}
@@ -0,0 +1,266 @@
+package GaFr;
+
+/** A bunch of particles which all look like the same stamp.
+  *
+  * Particles are little images (sparks, smoke puffs, raindrops...) which
+  * fly around for a while and then disappear.  You could make a GFStamp
+  * for each one, but with thousands of them, that's a lot of objects to
+  * create and throw away.  A particle system instead keeps all of its
+  * particles' information in arrays, and draws them all at once using
+  * GFStamp.stampBulk().
+  *
+  * The public fields control how new particles are launched and how they
+  * move.  To use it, create one with the stamp you want each particle to
+  * look like, and then each frame call update() and then draw().  Call
+  * emit() to launch particles at a particular spot, or set emitX, emitY,
+  * and rate to have them launched continuously.
+  *
+  * The system never holds more than the capacity you create it with; if
+  * it's full, new particles are just not launched.  Nothing is allocated
+  * after the system is created.
+  */
+public class GFParticleSystem
+{
+  /** The stamp each particle looks like. */
+  public GFStamp stamp;
+
+  /** Acceleration applied to all particles (pixels/second/second). */
+  public float gravityX, gravityY;
+
+  /** Fraction of velocity lost per second (0 means none). */
+  public float drag = 0;
+
+  /** Whether particles fade out (become transparent) as they age. */
+  public boolean fadeOut = true;
+
+  /** Where continuously emitted particles start. */
+  public float emitX, emitY;
+
+  /** How many particles are emitted per second (see update()). */
+  public float rate = 0;
+
+  /** Direction new particles are launched in (radians). */
+  public float direction = 0;
+
+  /** How far (in radians) either side of direction they may go. */
+  public float spread = GFM.PIf;
+
+  /** Range of launch speeds (pixels/second). */
+  public float speedMin = 20, speedMax = 60;
+
+  /** Range of lifetimes (seconds). */
+  public float lifeMin = 1, lifeMax = 2;
+
+  /** Range of starting scales (relative to the stamp's size). */
+  public float scaleMin = 1, scaleMax = 1;
+
+  /** How much the scale changes per second. */
+  public float growth = 0;
+
+  /** Range of spin speeds (radians/second). */
+  public float spinMin = 0, spinMax = 0;
+
+  /** Color tint of new particles. */
+  public int color = Gfx.Color.WHITE;
+
+  // The particles.  Live ones are always packed at the start of the
+  // arrays, so dead ones are replaced by the last live one.
+  protected int count;
+  protected final float[] x, y, vx, vy;
+  protected final float[] angle, spin, scale;
+  protected final float[] life, maxLife;
+  protected final int[] colors;
+  protected final int[] drawColors; // colors with fading applied
+
+  private float toEmit = 0; // Fractional particles left over for rate
+  private int seed = 0x2545F491;
+
+  public GFParticleSystem (GFStamp stamp, int capacity)
+  {
+    this.stamp = stamp;
+    x = new float[capacity];
+    y = new float[capacity];
+    vx = new float[capacity];
+    vy = new float[capacity];
+    angle = new float[capacity];
+    spin = new float[capacity];
+    scale = new float[capacity];
+    life = new float[capacity];
+    maxLife = new float[capacity];
+    colors = new int[capacity];
+    drawColors = new int[capacity];
+  }
+
+  /** The number of live particles. */
+  public int size ()
+  {
+    return count;
+  }
+
+  /** The most particles this system can hold. */
+  public int capacity ()
+  {
+    return x.length;
+  }
+
+  /** Gets rid of all the particles. */
+  public void clear ()
+  {
+    count = 0;
+  }
+
+  /** Seeds the random numbers used when launching particles.
+    *
+    * This is useful if you want the same effect to play out exactly the
+    * same way every time.
+    */
+  public void setSeed (int seed)
+  {
+    this.seed = (seed == 0) ? 1 : seed;
+  }
+
+  /** Returns a random float in [0,1).
+    *
+    * This is a xorshift generator, so it's quick and there's no object
+    * to share with anything else.
+    */
+  private float random ()
+  {
+    int s = seed;
+    s ^= s << 13;
+    s ^= s >>> 17;
+    s ^= s << 5;
+    seed = s;
+    return (s >>> 8) * (1.0f / (1 << 24));
+  }
+
+  private float random (float lo, float hi)
+  {
+    return lo + random() * (hi - lo);
+  }
+
+  /** Launches n particles from the given point.
+    *
+    * Returns how many were actually launched (fewer if the system filled).
+    */
+  public int emit (int n, float px, float py)
+  {
+    n = Math.min(n, x.length - count);
+    for (int k = 0; k < n; ++k)
+    {
+      int i = count++;
+      float a = direction + random(-spread, spread);
+      float v = random(speedMin, speedMax);
+      x[i] = px;
+      y[i] = py;
+      vx[i] = GFM.cosf(a) * v;
+      vy[i] = GFM.sinf(a) * v;
+      angle[i] = 0;
+      spin[i] = random(spinMin, spinMax);
+      scale[i] = random(scaleMin, scaleMax);
+      maxLife[i] = life[i] = random(lifeMin, lifeMax);
+      colors[i] = color;
+    }
+    return n;
+  }
+
+  /** Advances by one frame (1/60th of a second). */
+  public void update ()
+  {
+    update(1 / 60.0f);
+  }
+
+  /** Advances by the given amount of time (in seconds).
+    *
+    * This launches new particles (if rate is set), moves the live ones,
+    * and gets rid of the ones which have expired.
+    */
+  public void update (float dt)
+  {
+    if (rate > 0)
+    {
+      toEmit += rate * dt;
+      int n = (int)toEmit;
+      toEmit -= n;
+      emit(n, emitX, emitY);
+    }
+
+    float gx = gravityX * dt, gy = gravityY * dt;
+    float keep = (drag == 0) ? 1 : Math.max(0, 1 - drag * dt);
+    float grow = growth * dt;
+    float[] x = this.x, y = this.y, vx = this.vx, vy = this.vy;
+    float[] life = this.life;
+
+    int n = count;
+    int i = 0;
+    while (i < n)
+    {
+      float l = life[i] - dt;
+      if (l <= 0)
+      {
+        // Replace it with the last one and look at this slot again
+        --n;
+        moveParticle(n, i);
+        continue;
+      }
+      life[i] = l;
+      float nvx = (vx[i] + gx) * keep;
+      float nvy = (vy[i] + gy) * keep;
+      vx[i] = nvx;
+      vy[i] = nvy;
+      x[i] += nvx * dt;
+      y[i] += nvy * dt;
+      angle[i] += spin[i] * dt;
+      scale[i] += grow;
+      ++i;
+    }
+    count = n;
+  }
+
+  private void moveParticle (int from, int to)
+  {
+    x[to] = x[from];
+    y[to] = y[from];
+    vx[to] = vx[from];
+    vy[to] = vy[from];
+    angle[to] = angle[from];
+    spin[to] = spin[from];
+    scale[to] = scale[from];
+    life[to] = life[from];
+    maxLife[to] = maxLife[from];
+    colors[to] = colors[from];
+  }
+
+  /** Works out the color of each particle, fading as needed. */
+  private int[] computeColors ()
+  {
+    if (!fadeOut) return colors;
+    for (int i = 0; i < count; ++i)
+    {
+      int c = colors[i];
+      int a = (int)((c >>> 24) * (life[i] / maxLife[i]));
+      drawColors[i] = (c & 0x00ffffff) | (a << 24);
+    }
+    return drawColors;
+  }
+
+  /** Draws all the live particles.
+    *
+    * This should be called from within GFGame.onDraw().
+    */
+  public void draw ()
+  {
+    if (count == 0) return;
+    stamp.stampBulk(x, y, angle, scale, computeColors(), 0, count);
+  }
+
+  /** Draws all the live particles on a layer.
+    *
+    * @see GFStamp.stamp(int)
+    */
+  public void draw (int layer)
+  {
+    if (count == 0) return;
+    stamp.stampBulk(layer, x, y, angle, scale, computeColors(), 0, count);
+  }
+}
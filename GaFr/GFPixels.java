@@ -2,6 +2,8 @@ package GaFr;
 import java.awt.image.BufferedImage;
 import javax.imageio.ImageIO;
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
   * Raw pixel data.
@@ -11,6 +13,10 @@ import java.util.Arrays;
   *
   * Many of the functions mutate pixels and return the same object in order
   * to allow chaining calls.
+  *
+  * Operations on whole images (fill(), replaceColor(), resized(), etc.)
+  * split big images into bands and work on them in parallel; see
+  * parallelThreshold.
   */
 public class GFPixels
 {
@@ -23,6 +29,26 @@ public class GFPixels
   /// Pixel data.
   public int[] pix;
 
+  /// For resized(): use the nearest source pixel.  Fast but blocky.
+  public static final int FILTER_NEAREST = 0;
+
+  /// For resized(): blend the four nearest source pixels.
+  public static final int FILTER_BILINEAR = 1;
+
+  /** For resized(): average all the source pixels each pixel covers.
+    *
+    * This is the best choice for shrinking images (especially by a lot),
+    * since it doesn't skip any pixels.
+    */
+  public static final int FILTER_BOX = 2;
+
+  /** Work (roughly, in pixels) above which operations run in parallel.
+    *
+    * Big images are split into bands which are processed on the common
+    * ForkJoinPool.  Set this to Integer.MAX_VALUE to never do that.
+    */
+  public static int parallelThreshold = 512 * 512;
+
   /// Blank/empty constructor.
   public GFPixels (int w, int h)
   {
@@ -81,10 +107,13 @@ public class GFPixels
   public GFPixels replaceColor (int replaceThis, int withThis)
   {
     if (replaceThis == withThis) return this;
-    for (int i = 0; i < pix.length; ++i)
+    bands(pix.length, pix.length, (start, end) ->
     {
-      if (pix[i] == replaceThis) pix[i] = withThis;
-    }
+      for (int i = start; i < end; ++i)
+      {
+        if (pix[i] == replaceThis) pix[i] = withThis;
+      }
+    });
     return this;
   }
 
@@ -95,10 +124,7 @@ public class GFPixels
     */
   public GFPixels fill (int color)
   {
-    for (int i = 0; i < pix.length; ++i)
-    {
-      pix[i] = color;
-    }
+    bands(pix.length, pix.length, (start, end) -> Arrays.fill(pix, start, end, color));
     return this;
   }
 
@@ -124,10 +150,14 @@ public class GFPixels
     */
   public GFPixels replaceAlpha (int alpha)
   {
-    for (int i = 0; i < pix.length; ++i)
+    int a = GFM.clamp255(alpha) << 24;
+    bands(pix.length, pix.length, (start, end) ->
     {
-      pix[i] = Gfx.replaceAlpha(pix[i], alpha);
-    }
+      for (int i = start; i < end; ++i)
+      {
+        pix[i] = (pix[i] & 0xffffff) | a;
+      }
+    });
     return this;
   }
 
@@ -138,19 +168,15 @@ public class GFPixels
     */
   public GFPixels toGrayscale ()
   {
-    for (int i = 0; i < pix.length; ++i)
+    bands(pix.length, pix.length, (start, end) ->
     {
-      int col = pix[i];
-      int r = Gfx.getRed(col);
-      int g = Gfx.getGreen(col);
-      int b = Gfx.getBlue(col);
-      int a = Gfx.getAlpha(col);
-
-      int av = ((r+g+b) / 3) & 0xff;
-
-      col = (a << 24) | (av << 16) | (av << 8) | av;
-      pix[i] = col;
-    }
+      for (int i = start; i < end; ++i)
+      {
+        int col = pix[i];
+        int av = (((col >> 16) & 0xff) + ((col >> 8) & 0xff) + (col & 0xff)) / 3;
+        pix[i] = (col & 0xff000000) | (av * 0x010101);
+      }
+    });
     return this;
   }
 
@@ -162,22 +188,31 @@ public class GFPixels
   public GFPixels setSaturation (double saturation)
   {
     double inv = 1-saturation;
-    for (int i = 0; i < pix.length; ++i)
+    bands(pix.length, pix.length, (start, end) ->
     {
-      int col = pix[i];
-      int r = Gfx.getRed(col);
-      int g = Gfx.getGreen(col);
-      int b = Gfx.getBlue(col);
-      int a = Gfx.getAlpha(col);
-
-      int av = ((r+g+b) / 3) & 0xff;
-
-      r = (int)(r * saturation + av * inv);
-      g = (int)(g * saturation + av * inv);
-      b = (int)(b * saturation + av * inv);
-
-      pix[i] = Gfx.makeColor(r,g,b,a);
-    }
+      for (int i = start; i < end; ++i)
+      {
+        int col = pix[i];
+        int r = (col >> 16) & 0xff;
+        int g = (col >>  8) & 0xff;
+        int b =  col        & 0xff;
+
+        double gray = ((r+g+b) / 3) * inv;
+
+        r = (int)(r * saturation + gray);
+        g = (int)(g * saturation + gray);
+        b = (int)(b * saturation + gray);
+        // Only saturation above 1 or below 0 can take these out of range
+        if (((r | g | b) & ~0xff) != 0)
+        {
+          r = (r < 0) ? 0 : (r > 255) ? 255 : r;
+          g = (g < 0) ? 0 : (g > 255) ? 255 : g;
+          b = (b < 0) ? 0 : (b > 255) ? 255 : b;
+        }
+
+        pix[i] = (col & 0xff000000) | (r << 16) | (g << 8) | b;
+      }
+    });
     return this;
   }
 
@@ -245,6 +280,245 @@ public class GFPixels
     return n;
   }
 
+  /**
+    * Resize this image.
+    *
+    * filter is FILTER_NEAREST, FILTER_BILINEAR, or FILTER_BOX.  Colors
+    * are blended weighted by their alpha, so transparent pixels don't
+    * darken the edges of things.
+    *
+    * Returns a new image.
+    */
+  public GFPixels resized (int w, int h, int filter)
+  {
+    if (w <= 0 || h <= 0) throw new RuntimeException("Can't resize to " + w + "x" + h);
+    GFPixels dst = new GFPixels(w, h);
+    if (filter == FILTER_NEAREST)
+    {
+      int[] xs = new int[w];
+      for (int x = 0; x < w; ++x)
+        xs[x] = (int)((x + 0.5) * width / w);
+      bands(h, (long)w * h, (y0, y1) ->
+      {
+        for (int y = y0; y < y1; ++y)
+        {
+          int s = (int)((y + 0.5) * height / h) * width;
+          int d = y * w;
+          for (int x = 0; x < w; ++x)
+            dst.pix[d + x] = pix[s + xs[x]];
+        }
+      });
+      return dst;
+    }
+
+    // The same filter is applied across and then down.  Each output row
+    // is a weighted sum of a few source rows, each of which is first
+    // filtered horizontally to the output width.
+    Taps tx = new Taps(width, w, filter);
+    Taps ty = new Taps(height, h, filter);
+    bands(h, (long)w * h * ty.max, (y0, y1) ->
+    {
+      float[] row = new float[w * 4];
+      float[] sum = new float[w * 4];
+      for (int y = y0; y < y1; ++y)
+      {
+        Arrays.fill(sum, 0);
+        for (int j = 0; j < ty.count[y]; ++j)
+        {
+          filterRow(ty.start[y] + j, tx, row);
+          float wt = ty.weights[y * ty.max + j];
+          for (int i = 0; i < sum.length; ++i)
+            sum[i] += row[i] * wt;
+        }
+        int d = y * w;
+        for (int x = 0; x < w; ++x)
+        {
+          float a = sum[x * 4 + 3];
+          int c = 0;
+          if (a >= 0.5f)
+          {
+            float inv = 1 / a;
+            c = (clampByte(a) << 24)
+              | (clampByte(sum[x * 4] * inv) << 16)
+              | (clampByte(sum[x * 4 + 1] * inv) << 8)
+              | clampByte(sum[x * 4 + 2] * inv);
+          }
+          dst.pix[d + x] = c;
+        }
+      }
+    });
+    return dst;
+  }
+
+  /**
+    * Make a chain of mipmap levels.
+    *
+    * Level 0 is this image, and each level after that is half the size
+    * of the one before (rounding down, but at least 1), down to 1x1.
+    * They're made with FILTER_BOX, so this is a way to make mipmaps on
+    * the CPU (e.g., to check them, or to change them before uploading).
+    */
+  public GFPixels[] mipmaps ()
+  {
+    int n = 1;
+    for (int w = width, h = height; w > 1 || h > 1; w = Math.max(w / 2, 1), h = Math.max(h / 2, 1)) ++n;
+    GFPixels[] levels = new GFPixels[n];
+    levels[0] = this;
+    for (int i = 1; i < n; ++i)
+    {
+      GFPixels p = levels[i - 1];
+      levels[i] = p.resized(Math.max(p.width / 2, 1), Math.max(p.height / 2, 1), FILTER_BOX);
+    }
+    return levels;
+  }
+
+  /** The source pixels and weights which make up each pixel along one axis.
+    *
+    * Output pixel i is the sum of count[i] source pixels starting at
+    * start[i], weighted by weights[i*max] onward.  The weights add up to 1.
+    */
+  private static class Taps
+  {
+    int[] start, count;
+    float[] weights;
+    int max;
+
+    Taps (int srcLen, int dstLen, int filter)
+    {
+      double scale = srcLen / (double)dstLen;
+      start = new int[dstLen];
+      count = new int[dstLen];
+      if (filter == FILTER_BOX)
+      {
+        max = (int)Math.ceil(scale) + 1;
+        weights = new float[dstLen * max];
+        for (int i = 0; i < dstLen; ++i)
+        {
+          // Output pixel i covers source pixels a to b
+          double a = i * scale, b = Math.min((i + 1) * scale, srcLen);
+          int s = (int)a;
+          int n = 0;
+          for (int j = s; j < b; ++j)
+            weights[i * max + n++] = (float)((Math.min(b, j + 1) - Math.max(a, j)) / (b - a));
+          start[i] = s;
+          count[i] = n;
+        }
+      }
+      else
+      {
+        max = 2;
+        weights = new float[dstLen * max];
+        for (int i = 0; i < dstLen; ++i)
+        {
+          // Sample at the center of output pixel i
+          double c = (i + 0.5) * scale - 0.5;
+          c = Math.max(0, Math.min(c, srcLen - 1));
+          int s = Math.min((int)c, srcLen - 2);
+          if (s < 0)
+          {
+            // Only one source pixel
+            start[i] = 0;
+            count[i] = 1;
+            weights[i * max] = 1;
+            continue;
+          }
+          float f = (float)(c - s);
+          start[i] = s;
+          count[i] = 2;
+          weights[i * max] = 1 - f;
+          weights[i * max + 1] = f;
+        }
+      }
+    }
+  }
+
+  /** Filters source row y to the output width.
+    *
+    * The result is four floats per pixel: red, green, and blue multiplied
+    * by alpha, then alpha.
+    */
+  private void filterRow (int y, Taps tx, float[] out)
+  {
+    int s = y * width;
+    int n = tx.start.length;
+    for (int x = 0; x < n; ++x)
+    {
+      float r = 0, g = 0, b = 0, a = 0;
+      int p = s + tx.start[x];
+      int wi = x * tx.max;
+      for (int j = 0; j < tx.count[x]; ++j)
+      {
+        int c = pix[p + j];
+        float ca = (c >>> 24) * tx.weights[wi + j];
+        r += ((c >> 16) & 0xff) * ca;
+        g += ((c >>  8) & 0xff) * ca;
+        b += ( c        & 0xff) * ca;
+        a += ca;
+      }
+      out[x * 4] = r;
+      out[x * 4 + 1] = g;
+      out[x * 4 + 2] = b;
+      out[x * 4 + 3] = a;
+    }
+  }
+
+  private static int clampByte (float v)
+  {
+    int i = (int)(v + 0.5f);
+    return (i < 0) ? 0 : (i > 255) ? 255 : i;
+  }
+
+  /** Something done to a range of rows (or pixels). */
+  private interface Band
+  {
+    void run (int start, int end);
+  }
+
+  /** Runs op over 0 to n, split into parallel bands if there's lots of work. */
+  private static void bands (int n, long work, Band op)
+  {
+    // More threads than CPUs only adds overhead
+    int threads = Math.min(ForkJoinPool.getCommonPoolParallelism(),
+                           Runtime.getRuntime().availableProcessors());
+    if (work < parallelThreshold || threads < 2 || n < 2)
+    {
+      op.run(0, n);
+      return;
+    }
+    // A few bands per thread, so uneven ones even out
+    int grain = Math.max(1, n / (threads * 4));
+    ForkJoinPool.commonPool().invoke(new BandTask(op, 0, n, grain));
+  }
+
+  private static class BandTask extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+
+    final Band op;
+    final int start, end, grain;
+
+    BandTask (Band op, int start, int end, int grain)
+    {
+      this.op = op;
+      this.start = start;
+      this.end = end;
+      this.grain = grain;
+    }
+
+    @Override
+    protected void compute ()
+    {
+      if (end - start <= grain)
+      {
+        op.run(start, end);
+        return;
+      }
+      int mid = (start + end) >>> 1;
+      invokeAll(new BandTask(op, start, mid, grain),
+                new BandTask(op, mid, end, grain));
+    }
+  }
+
   /**
     * Copy a portion of one GFPixels into another.
     *
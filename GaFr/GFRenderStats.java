@@ -0,0 +1,218 @@
+package GaFr;
+
+/** Statistics about how frames were drawn.
+  *
+  * If your game is running slowly, this can help figure out why.  For
+  * each of the last several frames, it keeps track of how many stamps
+  * were drawn, how many times the batch was flushed (i.e., how many draw
+  * calls were made), how many textures had to be bound, how many stamps
+  * were culled, and how many bytes of stamp data were sent to the
+  * graphics hardware.  Each flush is also counted by the reason it
+  * happened (see the FLUSH_ constants).
+  *
+  * The most common problem is lots of flushes for FLUSH_TEXTURES, which
+  * means stamps using different textures are interleaved; see
+  * GFGame.setDeferredStamping() or TextureAtlas.
+  *
+  * Get it from GFGame.getRenderStats().  Frames are counted back from the
+  * most recently finished one, so framesAgo 0 is the last frame.  You can
+  * also have a summary drawn on screen with GFGame.setStatsOverlay().
+  */
+public class GFRenderStats
+{
+  /** The batch was full (and couldn't grow any more). */
+  public static final int FLUSH_CAPACITY = 0;
+  /** A stamp needed a texture, but all the texture slots were in use. */
+  public static final int FLUSH_TEXTURES = 1;
+  /** The end of the frame. */
+  public static final int FLUSH_END_OF_FRAME = 2;
+  /** The camera was changed or moved. */
+  public static final int FLUSH_CAMERA = 3;
+  /** Drawing switched to or from a render texture. */
+  public static final int FLUSH_TARGET = 4;
+  /** A static batch was drawn. */
+  public static final int FLUSH_STATIC = 5;
+  /** Some other setting was changed (e.g., the batch capacity). */
+  public static final int FLUSH_OTHER = 6;
+
+  /** The number of flush reasons. */
+  public static final int NUM_REASONS = 7;
+
+  private static final String[] REASON_NAMES = {
+    "capacity", "textures", "end", "camera", "target", "static", "other" };
+
+  /** Default number of frames of history to keep. */
+  public static final int DEFAULT_HISTORY = 120;
+
+  // Counts for the frame in progress
+  int stamps;
+  int flushes;
+  int texturesBound;
+  int culled;
+  long bytes;
+  int[] reasons = new int[NUM_REASONS];
+
+  // History of finished frames.  The most recent is at index last.
+  private final int history;
+  private int frames = 0; // How many entries are filled in
+  private int last = -1;
+  private final int[] histStamps, histFlushes, histTextures, histCulled;
+  private final long[] histBytes;
+  private final int[] histReasons;
+  private final boolean[] histSkipped;
+
+  public GFRenderStats ()
+  {
+    this(DEFAULT_HISTORY);
+  }
+
+  public GFRenderStats (int history)
+  {
+    if (history < 1) history = 1;
+    this.history = history;
+    histStamps = new int[history];
+    histFlushes = new int[history];
+    histTextures = new int[history];
+    histCulled = new int[history];
+    histBytes = new long[history];
+    histReasons = new int[history * NUM_REASONS];
+    histSkipped = new boolean[history];
+  }
+
+  /** Internal use.  Counts a flush (draw call). */
+  void flushed (int reason, int numStamps, int numTextures, long numBytes)
+  {
+    ++flushes;
+    ++reasons[reason];
+    stamps += numStamps;
+    texturesBound += numTextures;
+    bytes += numBytes;
+  }
+
+  /** Internal use.  Files away the frame in progress and starts a new one.
+    *
+    * skipped says whether the frame was skipped since it was unchanged.
+    */
+  void endFrame (boolean skipped)
+  {
+    last = (last + 1) % history;
+    if (frames < history) ++frames;
+    histStamps[last] = stamps;
+    histFlushes[last] = flushes;
+    histTextures[last] = texturesBound;
+    histCulled[last] = culled;
+    histBytes[last] = bytes;
+    histSkipped[last] = skipped;
+    System.arraycopy(reasons, 0, histReasons, last * NUM_REASONS, NUM_REASONS);
+
+    stamps = 0;
+    flushes = 0;
+    texturesBound = 0;
+    culled = 0;
+    bytes = 0;
+    for (int i = 0; i < NUM_REASONS; ++i) reasons[i] = 0;
+  }
+
+  /** The number of frames of history there are so far. */
+  public int getFrameCount ()
+  {
+    return frames;
+  }
+
+  /** The most frames of history which are kept. */
+  public int getHistoryLength ()
+  {
+    return history;
+  }
+
+  private int index (int framesAgo)
+  {
+    if (framesAgo < 0 || framesAgo >= frames)
+      throw new IndexOutOfBoundsException("No stats for " + framesAgo + " frames ago");
+    return (last - framesAgo + history) % history;
+  }
+
+  /** Number of stamps drawn. */
+  public int getStamps (int framesAgo)
+  {
+    return histStamps[index(framesAgo)];
+  }
+
+  /** Number of flushes (draw calls). */
+  public int getFlushes (int framesAgo)
+  {
+    return histFlushes[index(framesAgo)];
+  }
+
+  /** Number of flushes for a particular reason (one of the FLUSH_ constants). */
+  public int getFlushes (int framesAgo, int reason)
+  {
+    return histReasons[index(framesAgo) * NUM_REASONS + reason];
+  }
+
+  /** Number of times a texture was bound for drawing. */
+  public int getTexturesBound (int framesAgo)
+  {
+    return histTextures[index(framesAgo)];
+  }
+
+  /** Number of stamps culled (see GFGame.setStampCulling()). */
+  public int getCulled (int framesAgo)
+  {
+    return histCulled[index(framesAgo)];
+  }
+
+  /** Number of bytes of stamp data sent to the graphics hardware. */
+  public long getBytesUploaded (int framesAgo)
+  {
+    return histBytes[index(framesAgo)];
+  }
+
+  /** Whether the frame was skipped (see GFGame.setAutoSkipFrames()). */
+  public boolean wasSkipped (int framesAgo)
+  {
+    return histSkipped[index(framesAgo)];
+  }
+
+  /** Gets the name of a flush reason. */
+  public static String getReasonName (int reason)
+  {
+    return REASON_NAMES[reason];
+  }
+
+  /** Gets a short description of a frame's stats. */
+  public String getSummary (int framesAgo)
+  {
+    int i = index(framesAgo);
+    StringBuilder sb = new StringBuilder();
+    sb.append("stamps ").append(histStamps[i]);
+    sb.append("  culled ").append(histCulled[i]);
+    sb.append("  textures ").append(histTextures[i]);
+    sb.append("  bytes ").append(histBytes[i]);
+    if (histSkipped[i]) sb.append("  (skipped)");
+    sb.append("\nflushes ").append(histFlushes[i]);
+    for (int r = 0; r < NUM_REASONS; ++r)
+    {
+      int n = histReasons[i * NUM_REASONS + r];
+      if (n != 0) sb.append("  ").append(REASON_NAMES[r]).append(' ').append(n);
+    }
+    return sb.toString();
+  }
+
+  /** Draws a summary of the last frame's stats.
+    *
+    * This should be called from within GFGame.onDraw().  It also says
+    * how many of the recent frames were skipped.  Since its text changes
+    * every frame, calling it yourself stops frames from being skipped
+    * automatically; GFGame.setStatsOverlay() doesn't have that problem.
+    */
+  public void drawOverlay (GFFont font, float x, float y)
+  {
+    if (frames == 0) return;
+    int skipped = 0;
+    for (int i = 0; i < frames; ++i)
+      if (histSkipped[index(i)]) ++skipped;
+    font.draw(x, y, getSummary(0) + "\nskipped " + skipped + " of the last "
+                    + frames + " frames");
+  }
+}
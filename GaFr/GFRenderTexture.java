@@ -0,0 +1,201 @@
+package GaFr;
+
+/** A texture which you can draw stamps into.
+  *
+  * If part of your game is made from lots of stamps but rarely changes
+  * (a fancy HUD, a background put together from pieces, etc.), you can
+  * draw it into one of these once, and then draw the whole thing with a
+  * single stamp every frame.
+  *
+  * You can use it in two ways.  One is to call begin(), stamp things, and
+  * then call end().  The other is to override onRender() to do the
+  * stamping, and call refresh() each frame; it only redraws when the
+  * texture has been invalidated (or has never been drawn).  Either way,
+  * GaFr never redraws it on its own -- if what should be in it changes,
+  * call invalidate() (or just begin()/end() again).
+  *
+  * While drawing into a render texture, positions are in the texture's
+  * own pixels: 0,0 is its top left corner, and the camera is turned off
+  * (you can set one with GFGame.setCamera() if you want).  Don't stamp a
+  * render texture into itself.
+  *
+  * Make GFStamps from it like any other texture.
+  */
+public class GFRenderTexture extends GFTexture
+{
+  /** Whether the contents are up to date (see refresh()). */
+  protected boolean valid = false;
+
+  // What to go back to in end()
+  private boolean drawing = false;
+  private GFRenderTexture previousTarget;
+  private GFCamera previousCamera;
+
+  /** Creates a render texture of the given size.
+    *
+    * It starts out transparent.  Neither dimension may be more than
+    * MAX_TEXTURE_SIZE.
+    */
+  public GFRenderTexture (int width, int height)
+  {
+    this.width = width;
+    this.height = height;
+    // The framebuffer's first row is the bottom of the image, so flip
+    // the texture coordinates to make stamps come out the right way up.
+    u0 = 0; v0 = height;
+    u1 = width; v1 = 0;
+    GFN.renderTargetCreate(this, width, height);
+    // That changed the active unit and its binding behind GFGlState's back
+    GFGlState.invalidate();
+    // It can't be reloaded, so it's counted but never evicted
+    bytes = width * height * 4;
+    GFTextureManager.added(this);
+  }
+
+  /** Starts drawing into this texture.
+    *
+    * Anything stamped before this is drawn where it was meant to go.
+    */
+  public void begin ()
+  {
+    if (drawing)
+    {
+      GFU.log("GFRenderTexture.begin() called twice");
+      return;
+    }
+    drawing = true;
+    GFGame game = GFBoot.game;
+    previousTarget = game._stampManager.target;
+    previousCamera = game.getCamera();
+    game._stampManager.setTarget(this);
+    game.setCamera(null);
+  }
+
+  /** Finishes drawing into this texture.
+    *
+    * This goes back to drawing wherever you were drawing before begin()
+    * (normally the canvas), and marks the texture as up to date.
+    */
+  public void end ()
+  {
+    if (!drawing)
+    {
+      GFU.log("GFRenderTexture.end() called without begin()");
+      return;
+    }
+    GFGame game = GFBoot.game;
+    game.setCamera(null); // So stamps so far are drawn without a camera
+    game._stampManager.setTarget(previousTarget);
+    game.setCamera(previousCamera);
+    previousTarget = null;
+    previousCamera = null;
+    drawing = false;
+    valid = true;
+  }
+
+  /** Fills the whole texture with a color.
+    *
+    * This is only valid between begin() and end().  Use 0 to make it
+    * completely transparent.
+    */
+  public GFRenderTexture clear (int color)
+  {
+    if (!drawing)
+    {
+      GFU.log("GFRenderTexture.clear() called outside begin()/end()");
+      return this;
+    }
+    GFBoot.game._stampManager.flush(GFRenderStats.FLUSH_TARGET);
+    GFN.renderTargetClear( ((color >> 16) & 0xff) / 255.0f,
+                           ((color >>  8) & 0xff) / 255.0f,
+                           ((color >>  0) & 0xff) / 255.0f,
+                           ((color >> 24) & 0xff) / 255.0f );
+    return this;
+  }
+
+  /** Marks the contents as out of date, so refresh() redraws them. */
+  public GFRenderTexture invalidate ()
+  {
+    valid = false;
+    return this;
+  }
+
+  /** Checks whether the contents are up to date. */
+  public boolean isValid ()
+  {
+    return valid;
+  }
+
+  /** Redraws the contents if they're out of date.
+    *
+    * This clears the texture and calls onRender() between begin() and
+    * end().  Returns true if it redrew.
+    */
+  public boolean refresh ()
+  {
+    if (valid) return false;
+    begin();
+    clear(0);
+    try
+    {
+      onRender();
+    }
+    catch (Exception e)
+    {
+      GFST.printStackTrace(e, "In onRender()");
+    }
+    end();
+    return true;
+  }
+
+  /** Called by refresh() to draw the contents.
+    *
+    * Override this to stamp whatever should be in the texture.
+    */
+  protected void onRender ()
+  {
+  }
+
+  /** Frees the texture.
+    *
+    * Don't use it after calling this.
+    */
+  @Override
+  public void dispose ()
+  {
+    GFN.renderTargetDelete(this);
+    GFGlState.forgetTexture(this);
+    GFTextureManager.removed(this);
+    valid = false;
+  }
+
+  /** Not supported; draw into it instead. */
+  @Override
+  public GFTexture update (GFPixels src, int x, int y, int w, int h)
+  {
+    throw new RuntimeException("Can't update() a GFRenderTexture");
+  }
+
+  @Override
+  public GFStamp[][] splitIntoTilesBySize2D (int sizeX, int sizeY, int padL, int padT, int padR, int padB)
+  {
+    GFStamp[][] r = super.splitIntoTilesBySize2D(sizeX, sizeY, padL, padT, padR, padB);
+    for (GFStamp[] col : r)
+      for (GFStamp s : col) flipV(s);
+    return r;
+  }
+
+  @Override
+  public GFStamp subStamp (int x, int y, int w, int h)
+  {
+    return flipV(super.subStamp(x, y, w, h));
+  }
+
+  /** Makes a stamp's texture coordinates match the upside down storage. */
+  private static GFStamp flipV (GFStamp s)
+  {
+    s.v0 = 1 - s.v0;
+    s.v1 = 1 - s.v1;
+    return s;
+  }
+}
@@ -0,0 +1,638 @@
+package GaFr;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** A backend which draws stamps into a GFPixels, without a GPU.
+  *
+  * This is a GFHeadlessBackend (so calls are still counted and logged),
+  * but stamps, static batches, clears, and render textures are actually
+  * drawn, following what the WebGL shaders in gafrjs.js do: the pin,
+  * rotation, camera, texture coordinates, wrapping, nearest or linear
+  * filtering, tint, and alpha blending all work the same way.  Pixels are
+  * covered if their centers are inside a stamp.  Mipmaps aren't made, so
+  * the mipmap filters just use the full-size texture.
+  *
+  * That makes it handy for checking what a game draws (e.g., comparing
+  * frames against saved images in tests) on a machine with no browser,
+  * and for seeing how much drawing costs.  Get the result with
+  * getPixels().  Run GFBoot with -Dgafr.backend=software to use it.
+  *
+  * The framebuffer is split into TILE_SIZE square tiles, and each draw
+  * rasterizes the tiles in parallel on a ForkJoinPool.  Each tile draws
+  * its stamps in order, so the result doesn't depend on how many threads
+  * there are.
+  */
+public class GFSoftwareBackend extends GFHeadlessBackend
+{
+  /** Width and height of the tiles the framebuffer is split into. */
+  public static final int TILE_SIZE = 64;
+
+  /** What's known about a texture. */
+  private static class Texture
+  {
+    GFPixels pixels;
+    // Start with WebGL's defaults
+    int wrapS = Gl.REPEAT, wrapT = Gl.REPEAT;
+    int minFilter = Gl.NEAREST_MIPMAP_LINEAR, magFilter = Gl.LINEAR;
+  }
+
+  private final ForkJoinPool pool;
+
+  private final IdentityHashMap<GFTexture, Texture> textures = new IdentityHashMap<>();
+  private final Texture[] units = new Texture[32];
+  private int activeUnit = 0;
+
+  private GFPixels canvas = new GFPixels(1, 1);
+  private GFPixels framebuffer = canvas; // The canvas or a render texture
+  private boolean toTexture = false; // Drawing into a render texture?
+  private int clearColor = 0xff404040; // What gafrjs.js starts with
+
+  private final float[] view = {1,0,0, 0,1,0};
+  private float[] stampData;
+  private final IdentityHashMap<GFStaticBatch, ArrayList<float[]>> staticBatches = new IdentityHashMap<>();
+
+  // Per-stamp setup for the draw in progress (see prepare())
+  private static final int SETUP_SIZE = 10;
+  private float[] setup = new float[0];
+  private int[] colors = new int[0]; // Tint
+  private int[] boxes = new int[0]; // Pixel bounds: x0, y0, x1, y1 (inclusive)
+  private Texture[] stampTextures = new Texture[0];
+  private boolean[] stampLinear = new boolean[0];
+
+  // Stamps overlapping each tile, in order
+  private int[][] bins = new int[0][];
+  private int[] binCounts = new int[0];
+  private int[] busyTiles = new int[0]; // Tiles with anything in their bins
+
+  /** Creates a backend which draws using the common ForkJoinPool. */
+  public GFSoftwareBackend ()
+  {
+    this(ForkJoinPool.commonPool());
+  }
+
+  /** Creates a backend which draws using the given ForkJoinPool. */
+  public GFSoftwareBackend (ForkJoinPool pool)
+  {
+    this.pool = pool;
+  }
+
+  /** Gets the canvas's pixels.
+    *
+    * This is the actual framebuffer, not a copy, so it changes as more is
+    * drawn.  It's replaced if the canvas size changes.
+    */
+  public GFPixels getPixels ()
+  {
+    return canvas;
+  }
+
+  /** Gets a copy of a texture's (or render texture's) pixels.
+    *
+    * Returns null if nothing is known about the texture.
+    */
+  public GFPixels getTexturePixels (GFTexture t)
+  {
+    Texture tex = textures.get(t);
+    if (tex == null || tex.pixels == null) return null;
+    GFPixels p = new GFPixels(tex.pixels);
+    if (t instanceof GFRenderTexture)
+    {
+      // Render textures are stored upside down, like in OpenGL
+      int w = p.width;
+      for (int y = 0; y < p.height; ++y)
+        System.arraycopy(tex.pixels.pix, (p.height - 1 - y) * w, p.pix, y * w, w);
+    }
+    return p;
+  }
+
+  @Override
+  public void begin (Object o, int width, int height)
+  {
+    super.begin(o, width, height);
+    resizeCanvas(width, height);
+  }
+
+  @Override
+  public void setCanvasSize (int w, int h)
+  {
+    super.setCanvasSize(w, h);
+    resizeCanvas(w, h);
+  }
+
+  private void resizeCanvas (int w, int h)
+  {
+    if (w == canvas.width && h == canvas.height) return;
+    boolean current = framebuffer == canvas;
+    canvas = new GFPixels(Math.max(w, 1), Math.max(h, 1));
+    if (current) framebuffer = canvas;
+  }
+
+  @Override
+  public void gl_createTexture (GFTexture t)
+  {
+    super.gl_createTexture(t);
+    textures.put(t, new Texture());
+  }
+
+  @Override
+  public void gl_deleteTexture (GFTexture t)
+  {
+    super.gl_deleteTexture(t);
+    Texture tex = textures.remove(t);
+    for (int i = 0; i < units.length; ++i)
+      if (units[i] == tex) units[i] = null;
+  }
+
+  @Override
+  public void gl_activeTexture (int i)
+  {
+    super.gl_activeTexture(i);
+    activeUnit = i - Gl.TEXTURE0;
+  }
+
+  @Override
+  public void gl_bindTexture (int i, GFTexture t)
+  {
+    super.gl_bindTexture(i, t);
+    if (activeUnit < 0 || activeUnit >= units.length) return;
+    units[activeUnit] = (t == null) ? null : textures.get(t);
+  }
+
+  @Override
+  public void gl_texParameteri (int a, int b, int c)
+  {
+    super.gl_texParameteri(a, b, c);
+    Texture t = boundTexture();
+    if (t == null) return;
+    switch (b)
+    {
+      case Gl.TEXTURE_WRAP_S: t.wrapS = c; break;
+      case Gl.TEXTURE_WRAP_T: t.wrapT = c; break;
+      case Gl.TEXTURE_MIN_FILTER: t.minFilter = c; break;
+      case Gl.TEXTURE_MAG_FILTER: t.magFilter = c; break;
+    }
+  }
+
+  @Override
+  public void gl_texImage2D (int level, int internalFormat, int w, int h, int srcFormat, int pix[], int offset)
+  {
+    super.gl_texImage2D(level, internalFormat, w, h, srcFormat, pix, offset);
+    Texture t = boundTexture();
+    if (t == null || level != 0) return; // Only the full-size level is used
+    GFPixels p = new GFPixels(w, h);
+    System.arraycopy(pix, offset, p.pix, 0, w * h);
+    t.pixels = p;
+  }
+
+  @Override
+  public void gl_texSubImage2D (int level, int x, int y, int w, int h, int srcFormat, int[] pix, int offset, int rowLength)
+  {
+    super.gl_texSubImage2D(level, x, y, w, h, srcFormat, pix, offset, rowLength);
+    Texture t = boundTexture();
+    if (t == null || t.pixels == null || level != 0) return;
+    for (int row = 0; row < h; ++row)
+      System.arraycopy(pix, offset + row * rowLength, t.pixels.pix, (y + row) * t.pixels.width + x, w);
+  }
+
+  private Texture boundTexture ()
+  {
+    if (activeUnit < 0 || activeUnit >= units.length) return null;
+    return units[activeUnit];
+  }
+
+  @Override
+  public void gl_clearColor (float r, float g, float b, float a)
+  {
+    super.gl_clearColor(r, g, b, a);
+    clearColor = toColor(r, g, b, a);
+  }
+
+  @Override
+  public void gl_clear (int f)
+  {
+    super.gl_clear(f);
+    if ((f & Gl.COLOR_BUFFER_BIT) != 0) Arrays.fill(framebuffer.pix, clearColor);
+  }
+
+  @Override
+  public void stampSetup (int maxStamps, int maxTextures, float[] data)
+  {
+    super.stampSetup(maxStamps, maxTextures, data);
+    stampData = data;
+  }
+
+  @Override
+  public void stampDraw (int numStamps, int numTextures)
+  {
+    super.stampDraw(numStamps, numTextures);
+    draw(stampData, numStamps, 0, 0);
+  }
+
+  @Override
+  public void stampSetView (float a, float b, float tx, float c, float d, float ty)
+  {
+    super.stampSetView(a, b, tx, c, d, ty);
+    view[0] = a; view[1] = b; view[2] = tx;
+    view[3] = c; view[4] = d; view[5] = ty;
+  }
+
+  @Override
+  public void staticBatchUpload (GFStaticBatch b, int part, float[] data, int numStamps)
+  {
+    super.staticBatchUpload(b, part, data, numStamps);
+    ArrayList<float[]> parts = staticBatches.computeIfAbsent(b, k -> new ArrayList<>());
+    GFU.ensureIndex(parts, part);
+    parts.set(part, Arrays.copyOf(data, numStamps * GFStampManager.RECORD_SIZE));
+  }
+
+  @Override
+  public void staticBatchDraw (GFStaticBatch b, int part, int numStamps, int numTextures, float dx, float dy)
+  {
+    super.staticBatchDraw(b, part, numStamps, numTextures, dx, dy);
+    ArrayList<float[]> parts = staticBatches.get(b);
+    if (parts == null || part >= parts.size() || parts.get(part) == null) return;
+    draw(parts.get(part), numStamps, dx, dy);
+  }
+
+  @Override
+  public void staticBatchDelete (GFStaticBatch b)
+  {
+    super.staticBatchDelete(b);
+    staticBatches.remove(b);
+  }
+
+  @Override
+  public void renderTargetCreate (GFTexture t, int w, int h)
+  {
+    super.renderTargetCreate(t, w, h);
+    Texture tex = new Texture();
+    tex.pixels = new GFPixels(w, h);
+    textures.put(t, tex);
+  }
+
+  @Override
+  public void renderTargetBind (GFTexture t)
+  {
+    super.renderTargetBind(t);
+    Texture tex = (t == null) ? null : textures.get(t);
+    toTexture = tex != null;
+    framebuffer = toTexture ? tex.pixels : canvas;
+  }
+
+  @Override
+  public void renderTargetClear (float r, float g, float b, float a)
+  {
+    super.renderTargetClear(r, g, b, a);
+    Arrays.fill(framebuffer.pix, toColor(r, g, b, a));
+  }
+
+  @Override
+  public void renderTargetDelete (GFTexture t)
+  {
+    super.renderTargetDelete(t);
+    Texture tex = textures.remove(t);
+    if (tex != null && framebuffer == tex.pixels)
+    {
+      framebuffer = canvas;
+      toTexture = false;
+    }
+  }
+
+  private static int toColor (float r, float g, float b, float a)
+  {
+    return (toByte(a) << 24) | (toByte(r) << 16) | (toByte(g) << 8) | toByte(b);
+  }
+
+  private static int toByte (float f)
+  {
+    if (f <= 0) return 0;
+    if (f >= 1) return 255;
+    return (int)(f * 255 + 0.5f);
+  }
+
+  /** Draws stamp records into the framebuffer. */
+  private void draw (float[] data, int numStamps, float dx, float dy)
+  {
+    if (data == null || numStamps <= 0) return;
+    prepare(data, numStamps, dx, dy);
+
+    int tilesX = (framebuffer.width + TILE_SIZE - 1) / TILE_SIZE;
+    int tilesY = (framebuffer.height + TILE_SIZE - 1) / TILE_SIZE;
+    int numTiles = tilesX * tilesY;
+    if (bins.length < numTiles)
+    {
+      bins = Arrays.copyOf(bins, numTiles);
+      binCounts = new int[numTiles];
+      busyTiles = new int[numTiles];
+    }
+    Arrays.fill(binCounts, 0, numTiles, 0);
+
+    for (int i = 0; i < numStamps; ++i)
+    {
+      int b = i * 4;
+      if (boxes[b] > boxes[b + 2]) continue; // Off screen or invisible
+      int tx1 = boxes[b + 2] / TILE_SIZE, ty1 = boxes[b + 3] / TILE_SIZE;
+      for (int ty = boxes[b + 1] / TILE_SIZE; ty <= ty1; ++ty)
+        for (int tx = boxes[b] / TILE_SIZE; tx <= tx1; ++tx)
+        {
+          int tile = ty * tilesX + tx;
+          int[] bin = bins[tile];
+          if (bin == null) bin = bins[tile] = new int[64];
+          else if (binCounts[tile] == bin.length) bin = bins[tile] = Arrays.copyOf(bin, bin.length * 2);
+          bin[binCounts[tile]++] = i;
+        }
+    }
+
+    int numBusy = 0;
+    for (int tile = 0; tile < numTiles; ++tile)
+      if (binCounts[tile] != 0) busyTiles[numBusy++] = tile;
+    if (numBusy == 0) return;
+
+    TileTask task = new TileTask(busyTiles, 0, numBusy, tilesX);
+    if (numBusy == 1) task.compute();
+    else pool.invoke(task);
+  }
+
+  /** Rasterizes a range of tiles, splitting it up to run in parallel. */
+  private class TileTask extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final int[] tiles;
+    private final int lo, hi, tilesX;
+
+    TileTask (int[] tiles, int lo, int hi, int tilesX)
+    {
+      this.tiles = tiles;
+      this.lo = lo;
+      this.hi = hi;
+      this.tilesX = tilesX;
+    }
+
+    @Override
+    protected void compute ()
+    {
+      if (hi - lo == 1)
+      {
+        int tile = tiles[lo];
+        int x0 = (tile % tilesX) * TILE_SIZE;
+        int y0 = (tile / tilesX) * TILE_SIZE;
+        rasterTile(tile, x0, y0,
+                   Math.min(x0 + TILE_SIZE, framebuffer.width) - 1,
+                   Math.min(y0 + TILE_SIZE, framebuffer.height) - 1);
+        return;
+      }
+      int mid = (lo + hi) >>> 1;
+      invokeAll(new TileTask(tiles, lo, mid, tilesX),
+                new TileTask(tiles, mid, hi, tilesX));
+    }
+  }
+
+  /** Works out where each stamp goes and how to fill it in.
+    *
+    * A stamp is a parallelogram.  A point in it is origin + s*ex + t*ey
+    * for s and t in [0,1), where ex and ey are the edges from the corner
+    * at texture coordinate u0,v0.  For each stamp, this stores the origin,
+    * the inverse of [ex ey] (to get s,t for a pixel), and the texture
+    * coordinates.  It's just what the vertex shader does, worked backwards.
+    */
+  private void prepare (float[] data, int n, float offsetX, float offsetY)
+  {
+    if (colors.length < n)
+    {
+      int size = Math.max(n, colors.length * 2);
+      setup = new float[size * SETUP_SIZE];
+      colors = new int[size];
+      boxes = new int[size * 4];
+      stampTextures = new Texture[size];
+      stampLinear = new boolean[size];
+    }
+
+    float va = view[0], vb = view[1], vtx = view[2];
+    float vc = view[3], vd = view[4], vty = view[5];
+    int fbw = framebuffer.width, fbh = framebuffer.height;
+
+    for (int i = 0; i < n; ++i)
+    {
+      int off = i * GFStampManager.RECORD_SIZE;
+      int b = i * 4;
+      boxes[b] = 1; boxes[b + 2] = 0; // Nothing to draw, unless it turns out otherwise
+
+      float pinx = data[off + 0], piny = data[off + 1];
+      float w = data[off + 2], h = data[off + 3];
+      float px = data[off + 4] + offsetX, py = data[off + 5] + offsetY;
+      float sin = data[off + 6], cos = data[off + 7];
+      int tintHi = (int)data[off + 12];
+      int slot = tintHi >>> 16;
+      int color = ((tintHi & 0xffff) << 16) | (int)data[off + 13];
+      Texture tex = (slot < units.length) ? units[slot] : null;
+      if (tex == null || tex.pixels == null || (color >>> 24) == 0) continue;
+
+      // The corner at a_coord 0,0 in world coordinates, then on screen
+      float wx = px - pinx * cos - piny * sin;
+      float wy = py - piny * cos + pinx * sin;
+      float ox = va * wx + vb * wy + vtx;
+      float oy = vc * wx + vd * wy + vty;
+      // The edges along a_coord x and y
+      float exx = (va * cos - vb * sin) * w, exy = (vc * cos - vd * sin) * w;
+      float eyx = (va * sin + vb * cos) * h, eyy = (vc * sin + vd * cos) * h;
+
+      float det = exx * eyy - eyx * exy;
+      if (Math.abs(det) < 1e-12f) continue;
+
+      // Pixel centers inside the bounding box
+      float minX = ox + Math.min(0, exx) + Math.min(0, eyx);
+      float maxX = ox + Math.max(0, exx) + Math.max(0, eyx);
+      float minY = oy + Math.min(0, exy) + Math.min(0, eyy);
+      float maxY = oy + Math.max(0, exy) + Math.max(0, eyy);
+      int x0 = Math.max(0, (int)Math.ceil(minX - 0.5f));
+      int y0 = Math.max(0, (int)Math.ceil(minY - 0.5f));
+      int x1 = Math.min(fbw - 1, (int)Math.floor(maxX - 0.5f));
+      int y1 = Math.min(fbh - 1, (int)Math.floor(maxY - 0.5f));
+      if (x0 > x1 || y0 > y1) continue;
+
+      float u0 = data[off + 8], v0 = data[off + 9];
+      float du = data[off + 10] - u0, dv = data[off + 11] - v0;
+
+      int s = i * SETUP_SIZE;
+      setup[s + 0] = ox;
+      setup[s + 1] = oy;
+      setup[s + 2] = eyy / det;  // ds/dx
+      setup[s + 3] = -eyx / det; // ds/dy
+      setup[s + 4] = -exy / det; // dt/dx
+      setup[s + 5] = exx / det;  // dt/dy
+      setup[s + 6] = u0;
+      setup[s + 7] = v0;
+      setup[s + 8] = du;
+      setup[s + 9] = dv;
+
+      // Like the GPU, minify if one pixel covers more than one texel
+      float tw = tex.pixels.width, th = tex.pixels.height;
+      float rx = hypot(du * setup[s + 2] * tw, dv * setup[s + 4] * th);
+      float ry = hypot(du * setup[s + 3] * tw, dv * setup[s + 5] * th);
+      int filter = (Math.max(rx, ry) > 1) ? tex.minFilter : tex.magFilter;
+      stampLinear[i] = filter == Gl.LINEAR || filter == Gl.LINEAR_MIPMAP_NEAREST
+                    || filter == Gl.LINEAR_MIPMAP_LINEAR;
+
+      stampTextures[i] = tex;
+      colors[i] = color;
+      boxes[b] = x0; boxes[b + 1] = y0;
+      boxes[b + 2] = x1; boxes[b + 3] = y1;
+    }
+  }
+
+  private static float hypot (float x, float y)
+  {
+    return (float)Math.sqrt(x * x + y * y);
+  }
+
+  /** Draws the stamps in a tile's bin, within the given pixel bounds. */
+  private void rasterTile (int tile, int tx0, int ty0, int tx1, int ty1)
+  {
+    int[] bin = bins[tile];
+    int count = binCounts[tile];
+    int[] fb = framebuffer.pix;
+    int fbw = framebuffer.width, fbh = framebuffer.height;
+    boolean intoTexture = toTexture;
+
+    for (int k = 0; k < count; ++k)
+    {
+      int i = bin[k];
+      int b = i * 4;
+      int x0 = Math.max(tx0, boxes[b]), x1 = Math.min(tx1, boxes[b + 2]);
+      int y0 = Math.max(ty0, boxes[b + 1]), y1 = Math.min(ty1, boxes[b + 3]);
+      if (x0 > x1 || y0 > y1) continue;
+
+      int s = i * SETUP_SIZE;
+      float ox = setup[s], oy = setup[s + 1];
+      float sdx = setup[s + 2], sdy = setup[s + 3];
+      float tdx = setup[s + 4], tdy = setup[s + 5];
+      float u0 = setup[s + 6], v0 = setup[s + 7];
+      float du = setup[s + 8], dv = setup[s + 9];
+
+      Texture tex = stampTextures[i];
+      int[] texels = tex.pixels.pix;
+      int tw = tex.pixels.width, th = tex.pixels.height;
+      boolean linear = stampLinear[i];
+
+      int color = colors[i];
+      float tintA = ((color >>> 24) & 0xff) / 255f;
+      float tintR = ((color >>> 16) & 0xff) / 255f;
+      float tintG = ((color >>>  8) & 0xff) / 255f;
+      float tintB = ((color       ) & 0xff) / 255f;
+
+      for (int y = y0; y <= y1; ++y)
+      {
+        float qy = y + 0.5f - oy;
+        float qx = x0 + 0.5f - ox;
+        float ss = qx * sdx + qy * sdy;
+        float tt = qx * tdx + qy * tdy;
+        // Narrow the row down to (a pixel either side of) where s and t
+        // are both in [0,1), so rotated stamps don't test lots of pixels
+        // outside them.  The test below still decides exactly.
+        float lo = 0, hi = x1 - x0;
+        if (sdx != 0)
+        {
+          float a = -ss / sdx, c = (1 - ss) / sdx;
+          lo = Math.max(lo, Math.min(a, c) - 1);
+          hi = Math.min(hi, Math.max(a, c) + 1);
+        }
+        else if (ss < 0 || ss >= 1) continue;
+        if (tdx != 0)
+        {
+          float a = -tt / tdx, c = (1 - tt) / tdx;
+          lo = Math.max(lo, Math.min(a, c) - 1);
+          hi = Math.min(hi, Math.max(a, c) + 1);
+        }
+        else if (tt < 0 || tt >= 1) continue;
+        if (lo > hi) continue;
+        int first = (int)lo, last = (int)hi;
+        ss += first * sdx;
+        tt += first * tdx;
+        // Render textures are upside down (see GFRenderTexture)
+        int row = (intoTexture ? (fbh - 1 - y) : y) * fbw;
+        for (int x = x0 + first; x <= x0 + last; ++x, ss += sdx, tt += tdx)
+        {
+          if (ss < 0 || ss >= 1 || tt < 0 || tt >= 1) continue;
+
+          float u = (u0 + ss * du) * tw;
+          float v = (v0 + tt * dv) * th;
+          float sa, sr, sg, sb;
+          if (linear)
+          {
+            u -= 0.5f;
+            v -= 0.5f;
+            int iu = floor(u), iv = floor(v);
+            float fu = u - iu, fv = v - iv;
+            int c0 = wrap(iu, tw, tex.wrapS), c1 = wrap(iu + 1, tw, tex.wrapS);
+            int r0 = wrap(iv, th, tex.wrapT) * tw, r1 = wrap(iv + 1, th, tex.wrapT) * tw;
+            int p00 = texels[r0 + c0], p10 = texels[r0 + c1];
+            int p01 = texels[r1 + c0], p11 = texels[r1 + c1];
+            float w00 = (1 - fu) * (1 - fv), w10 = fu * (1 - fv);
+            float w01 = (1 - fu) * fv, w11 = fu * fv;
+            sa = lerp4(p00, p10, p01, p11, 24, w00, w10, w01, w11);
+            sr = lerp4(p00, p10, p01, p11, 16, w00, w10, w01, w11);
+            sg = lerp4(p00, p10, p01, p11,  8, w00, w10, w01, w11);
+            sb = lerp4(p00, p10, p01, p11,  0, w00, w10, w01, w11);
+          }
+          else
+          {
+            int texel = texels[wrap(floor(v), th, tex.wrapT) * tw
+                             + wrap(floor(u), tw, tex.wrapS)];
+            sa = ((texel >>> 24) & 0xff) / 255f;
+            sr = ((texel >>> 16) & 0xff) / 255f;
+            sg = ((texel >>>  8) & 0xff) / 255f;
+            sb = ((texel       ) & 0xff) / 255f;
+          }
+          sa *= tintA;
+          if (sa <= 0) continue;
+          sr *= tintR;
+          sg *= tintG;
+          sb *= tintB;
+
+          // Blending as set up in gafrjs.js: SRC_ALPHA, ONE_MINUS_SRC_ALPHA,
+          // except render textures get ONE, ONE_MINUS_SRC_ALPHA for alpha.
+          int d = fb[row + x];
+          float inv = 1 - sa;
+          float oa = (intoTexture ? sa : sa * sa) + ((d >>> 24) & 0xff) / 255f * inv;
+          float or = sr * sa + ((d >>> 16) & 0xff) / 255f * inv;
+          float og = sg * sa + ((d >>>  8) & 0xff) / 255f * inv;
+          float ob = sb * sa + ((d       ) & 0xff) / 255f * inv;
+          fb[row + x] = (toByte(oa) << 24) | (toByte(or) << 16) | (toByte(og) << 8) | toByte(ob);
+        }
+      }
+    }
+  }
+
+  private static float lerp4 (int p00, int p10, int p01, int p11, int shift,
+                              float w00, float w10, float w01, float w11)
+  {
+    return ( ((p00 >>> shift) & 0xff) * w00 + ((p10 >>> shift) & 0xff) * w10
+           + ((p01 >>> shift) & 0xff) * w01 + ((p11 >>> shift) & 0xff) * w11 ) / 255f;
+  }
+
+  // Math.floor() goes through doubles, and isn't always fast
+  private static int floor (float f)
+  {
+    int i = (int)f;
+    return (f < i) ? i - 1 : i;
+  }
+
+  /** Applies a texture wrap mode to a texel coordinate. */
+  private static int wrap (int i, int size, int mode)
+  {
+    switch (mode)
+    {
+      case Gl.CLAMP_TO_EDGE:
+        return (i < 0) ? 0 : (i >= size) ? size - 1 : i;
+      case Gl.MIRRORED_REPEAT:
+        int m = Math.floorMod(i, size * 2);
+        return (m < size) ? m : size * 2 - 1 - m;
+      default:
+        return Math.floorMod(i, size);
+    }
+  }
+}
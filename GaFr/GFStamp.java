@@ -20,6 +20,12 @@ import static GaFr.GFM.*;
   * the given color are multiplied against the texture color.  This lets
   * you tint images to a degree.  Perhaps more interestingly, you can
   * set the alpha channel to make the image partially transparent.
+  *
+  * Internally, a stamp caches some information derived from its size,
+  * pin, angle, and texture coordinates (like the sine and cosine of the
+  * angle) so that it doesn't need to be recomputed every time the stamp is
+  * drawn.  It notices when any of those change, whether through methods
+  * or by setting the fields directly.
   */
 public class GFStamp
 {
@@ -48,6 +54,63 @@ public class GFStamp
 
   public int color = Gfx.Color.WHITE; ///< The current color tint.
 
+  /** Internal use.  The number of floats in the cached record. */
+  static final int RECORD_CACHED = 12;
+
+  /** Internal use.
+    *
+    * Cached drawing info: the pin in pixels, the size, the position (not
+    * filled in here; it's patched in when drawing), sin/cos of the angle,
+    * and the texture coordinates.  This is the start of the record layout
+    * GFStampManager uses.
+    */
+  final float[] record = new float[RECORD_CACHED];
+
+  // The field values the record was computed from.  The fields are
+  // public, so comparing against these is how changes are noticed.  NaN
+  // never compares equal, so the first check always recomputes.
+  private float cachedPinX, cachedPinY, cachedWidth, cachedHeight;
+  private float cachedAngle = Float.NaN;
+  private float cachedU0, cachedV0, cachedU1, cachedV1;
+
+  /** Internal use.  Recomputes the cached drawing info if it's stale. */
+  void updateCache ()
+  {
+    if (angle == cachedAngle && width == cachedWidth
+        && height == cachedHeight && pinX == cachedPinX && pinY == cachedPinY
+        && u0 == cachedU0 && v0 == cachedV0 && u1 == cachedU1
+        && v1 == cachedV1)
+      return;
+    cachedAngle = angle;
+    cachedWidth = width;
+    cachedHeight = height;
+    cachedPinX = pinX;
+    cachedPinY = pinY;
+    cachedU0 = u0;
+    cachedV0 = v0;
+    cachedU1 = u1;
+    cachedV1 = v1;
+
+    record[0] = pinX * width; //TODO: Make the shader use relative coordinates
+    record[1] = pinY * height;//      so that we can skip scaling it here?
+    record[2] = width;
+    record[3] = height;
+    if (angle == 0)
+    {
+      record[6] = 0;
+      record[7] = 1;
+    }
+    else
+    {
+      record[6] = sinf(angle);
+      record[7] = cosf(angle);
+    }
+    record[8] = u0;
+    record[9] = v0;
+    record[10] = u1;
+    record[11] = v1;
+  }
+
   /** Change just the alpha component of the color tint.
     *
     * @param v The alpha value (0 is fully transparent, 1 is fully opaque.
@@ -301,4 +364,65 @@ public class GFStamp
   {
     GFBoot.game._stampManager.stamp(this, x, y);
   }
+
+  /** Draw the stamp on a layer.
+    *
+    * Stamps drawn on a layer are queued up and drawn at the end of the
+    * frame, after stamps drawn without a layer.  Stamps on lower layers
+    * are drawn first (i.e., underneath stamps on higher layers).  So you
+    * might, for example, put your background on layer 0, characters on
+    * layer 1, and the user interface on layer 2 -- and then stamp things
+    * in whatever order is convenient.  Overlapping stamps on the same
+    * layer are drawn in the order they were stamped.
+    *
+    * @see GFStamp.stamp(int, float)
+    */
+  public void stamp (int layer)
+  {
+    GFBoot.game._stampManager.stamp(this, x, y, layer, 0);
+  }
+
+  /** Draw the stamp on a layer at a given depth.
+    *
+    * This is like stamp(int), except that within the layer, stamps with
+    * a smaller depth are drawn first.  A common trick in top-down games
+    * is to use the stamp's Y coordinate as the depth, so that things
+    * lower on the screen are drawn in front of things higher up.
+    */
+  public void stamp (int layer, float depth)
+  {
+    GFBoot.game._stampManager.stamp(this, x, y, layer, depth);
+  }
+
+  /** Draw lots of copies of the stamp at once.
+    *
+    * This draws `count` copies, where copy i is at xs[offset+i] and
+    * ys[offset+i].  This is much faster than moving the stamp and calling
+    * stamp() for each one, which makes it handy for things like particles.
+    *
+    * The other arrays are optional (pass null to leave them out).  If
+    * given, angles[offset+i] is used as the rotation of copy i instead of
+    * the stamp's, scales[offset+i] multiplies its current size, and
+    * colors[offset+i] is used as its color tint.
+    *
+    * The stamp's own x and y are ignored.
+    */
+  public void stampBulk (float[] xs, float[] ys, float[] angles,
+                         float[] scales, int[] colors, int offset, int count)
+  {
+    GFBoot.game._stampManager.stampBulk(this, xs, ys, angles, scales, colors,
+                                        offset, count);
+  }
+
+  /** Draw lots of copies of the stamp at once on a layer.
+    *
+    * This is like stampBulk() without a layer, but all of the copies are
+    * drawn on the given layer (see stamp(int)).
+    */
+  public void stampBulk (int layer, float[] xs, float[] ys, float[] angles,
+                         float[] scales, int[] colors, int offset, int count)
+  {
+    GFBoot.game._stampManager.stampBulk(this, xs, ys, angles, scales, colors,
+                                        offset, count, layer);
+  }
 }
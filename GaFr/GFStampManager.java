@@ -1,54 +1,522 @@
 package GaFr;
-import static GaFr.GFM.*;
+import java.util.Arrays;
 
 /** Internal use.
   *
   * This is responsible for actually drawing stamps.
+  *
+  * Stamps are collected into a batch which is drawn all at once when it
+  * fills up, when it runs out of texture slots, or at the end of the frame.
+  * The batch starts out holding DEFAULT_CAPACITY stamps.  Rather than
+  * drawing as soon as it's full, it grows (up to maxCapacity) so that a
+  * busy frame can usually still be drawn with a single call.
+  *
+  * Stamps drawn with a layer (and optionally a depth) go into a render
+  * queue instead of straight into the batch.  At the end of the frame, the
+  * queue is sorted by layer and then by depth and drawn after everything
+  * else.  The sort is a radix sort over primitive key arrays, so it takes
+  * linear time and doesn't allocate once the arrays are big enough.
+  *
+  * In deferred mode, *all* stamps go into the queue (stamps without a
+  * layer go in layer 0 at depth 0).
+  *
+  * While batching the queue, a stamp whose texture doesn't fit in the
+  * current batch can be put off until a later batch, and stamps after it
+  * can be pulled ahead of it -- but only if they don't overlap it.  So the
+  * picture comes out the same as drawing in order, but with far fewer
+  * texture-slot flushes.
+  *
+  * Optionally, stamps which are entirely outside the canvas can be culled
+  * (dropped before they ever get into the batch or queue).
+  *
+  * The current camera (if any) is applied by the shader, so stamp records
+  * are always in world coordinates.  Changing the camera draws whatever
+  * has been stamped so far, since it was stamped with the old view.
+  *
+  * If skipping unchanged frames is on, batches are logged rather than
+  * drawn during the frame.  At the end of the frame, if the log matches
+  * the last frame's, nothing is drawn at all (not even the clear), so the
+  * last frame stays on screen.  Otherwise, the screen is cleared and the
+  * log is replayed.  Things which can't be logged (static batches, render
+  * textures) replay the log so far and then draw directly for the rest of
+  * the frame.
   */
 class GFStampManager
 {
-  private static final int MAX_ITEMS = 512;
+  /** Number of stamps a batch can initially hold. */
+  static final int DEFAULT_CAPACITY = 512;
+
+  /** Default limit on how large a batch can grow. */
+  static final int DEFAULT_MAX_CAPACITY = 16384;
 
-  float[] vinfo = new float[MAX_ITEMS*8];
-  // stamp info is:
+  /** Number of stamps the arrays below can currently hold. */
+  int capacity;
+
+  /** The batch never grows beyond this many stamps. */
+  int maxCapacity = DEFAULT_MAX_CAPACITY;
+
+  /** Number of floats in each stamp's record. */
+  static final int RECORD_SIZE = 14;
+
+  float[] data;
+  // Each stamp's record is interleaved into this one array, so the whole
+  // batch can be uploaded at once.  A record is:
   // pinx,piny
   // sizex,sizey
   // posx,posy
   // sin,cos
-
-  float[] tcs = new float[MAX_ITEMS*4]; // two u and two v coords
-
-  byte[] tex = new byte[MAX_ITEMS];
-
-  int[] colors = new int[MAX_ITEMS];
+  // u0,v0,u1,v1
+  // tint+texture (see setTint())
+  //
+  // The first 12 floats are what GFStamp caches.
 
   GFTexture[] texmap = new GFTexture[MAX_TEXTURES];
 
-  private static final int MAX_TEXTURES = 6;
+  static final int MAX_TEXTURES = 6;
 
   int nextTexture = 0;
   int nextIndex = 0;
 
+  /** Whether unlayered stamps are queued too. */
+  boolean deferred = false;
+
+  /** Most stamps which may be skipped over while filling a batch from the queue.
+    *
+    * This bounds the work done checking overlaps.
+    */
+  private static final int MAX_SKIPPED = 64;
+
+  // The render queue.  Records use the same layout as data, but the
+  // texture part isn't filled in until they're batched.
+  int queued = 0;
+  float[] qdata;
+  int[] qcolors;
+  GFTexture[] qtex;
+  int[] qlayers; // layer ^ MIN_VALUE, so it sorts correctly as unsigned
+  int[] qdepths; // depth as sortable unsigned bits; see depthKey()
+  float[] qbounds; // minx,miny,maxx,maxy
+
+  // Scratch space for ordering the queue
+  int[] qorder;
+  int[] qscratch;
+  int[] radixCounts = new int[8 * 256];
+  float[] skipped = new float[MAX_SKIPPED*4];
+
+  // Whether anything in the queue has a nonzero layer or depth
+  boolean keyed;
+
+  /** Whether to drop stamps which are entirely off screen. */
+  boolean culling = false;
+
+  // The size of what's being drawn into (the canvas or a render texture)
+  float viewWidth, viewHeight;
+
+  // The canvas size
+  float canvasWidth, canvasHeight;
+
+  /** The render texture being drawn into, or null for the canvas. */
+  GFRenderTexture target;
+
+  // The visible area in world coordinates (minx,miny,maxx,maxy), used for
+  // culling
+  float[] visible = new float[4];
+
+  /** The camera in use, or null. */
+  GFCamera camera;
+
+  // The world-to-canvas transform last sent to the native side (see
+  // GFCamera.computeView()), and whether it needs to be sent again.
+  float[] view = {1,0,0, 0,1,0};
+  boolean viewDirty = false;
+
+  /** Counters for the frame in progress and recent frames. */
+  final GFRenderStats stats = new GFRenderStats();
+
+  float[] bounds = new float[4];
+
+  /** Whether to skip drawing frames which are the same as the last one. */
+  boolean autoSkip = false;
+
+  /** Font for the stats overlay, or null if it's off. */
+  GFFont overlayFont = null;
+
+  /** If set, the next frame is drawn even if it looks unchanged. */
+  boolean forceRedraw = true;
+
+  // Whether batches are currently being logged instead of drawn
+  private boolean logging = false;
+
+  // Whether the screen still needs clearing this frame
+  private boolean needClear = false;
+
+  // This frame's log and the last drawn frame's
+  private FrameLog log = new FrameLog();
+  private FrameLog lastLog = new FrameLog();
+
+  /** A record of the batches drawn during a frame. */
+  private static class FrameLog
+  {
+    /** Whether this is a complete frame which can be compared against. */
+    boolean valid = false;
+    int batches = 0;
+    int floats = 0;
+    float[] data = new float[0];
+    int[] counts = new int[8];
+    int[] numTextures = new int[8];
+    int[] reasons = new int[8];
+    GFTexture[] textures = new GFTexture[8*MAX_TEXTURES];
+    float[] views = new float[8*6];
+
+    void clear ()
+    {
+      Arrays.fill(textures, 0, batches*MAX_TEXTURES, null);
+      batches = 0;
+      floats = 0;
+      valid = false;
+    }
+
+    void add (float[] src, int n, GFTexture[] tex, int nt, float[] view,
+              int reason)
+    {
+      if (batches == counts.length)
+      {
+        int m = batches * 2;
+        counts = Arrays.copyOf(counts, m);
+        numTextures = Arrays.copyOf(numTextures, m);
+        reasons = Arrays.copyOf(reasons, m);
+        textures = Arrays.copyOf(textures, m*MAX_TEXTURES);
+        views = Arrays.copyOf(views, m*6);
+      }
+      int size = n * RECORD_SIZE;
+      if (floats + size > data.length)
+        data = Arrays.copyOf(data, Math.max(data.length * 2, floats + size));
+      System.arraycopy(src, 0, data, floats, size);
+      floats += size;
+      counts[batches] = n;
+      numTextures[batches] = nt;
+      reasons[batches] = reason;
+      System.arraycopy(tex, 0, textures, batches*MAX_TEXTURES, nt);
+      System.arraycopy(view, 0, views, batches*6, 6);
+      ++batches;
+    }
+
+    boolean sameAs (FrameLog o)
+    {
+      if (!o.valid || o.batches != batches || o.floats != floats) return false;
+      for (int b = 0; b < batches; ++b)
+      {
+        if (o.counts[b] != counts[b]) return false;
+        if (o.numTextures[b] != numTextures[b]) return false;
+      }
+      for (int i = 0; i < batches*MAX_TEXTURES; ++i)
+        if (o.textures[i] != textures[i]) return false;
+      for (int i = 0; i < batches*6; ++i)
+        if (o.views[i] != views[i]) return false;
+      // Compare as bits, so e.g. NaN positions compare equal
+      for (int i = 0; i < floats; ++i)
+        if (Float.floatToIntBits(o.data[i]) != Float.floatToIntBits(data[i])) return false;
+      return true;
+    }
+  }
+
 
   GFStampManager ()
   {
-    GFN.stampSetup(MAX_ITEMS, MAX_TEXTURES, vinfo, tcs, tex, colors);
+    this(DEFAULT_CAPACITY);
+  }
+
+  GFStampManager (int capacity)
+  {
+    allocate(capacity);
+  }
+
+  /** Sets the initial and maximum batch sizes.
+    *
+    * Anything currently batched is drawn first.
+    */
+  void setCapacity (int initial, int max)
+  {
+    if (initial < 1) initial = 1;
+    stopLogging();
+    flush(GFRenderStats.FLUSH_OTHER);
+    maxCapacity = Math.max(initial, max);
+    if (initial != capacity) allocate(initial);
+  }
+
+  /** Replace the batch arrays with empty ones of the given size. */
+  private void allocate (int n)
+  {
+    capacity = n;
+    data = new float[n*RECORD_SIZE];
+    GFN.stampSetup(capacity, MAX_TEXTURES, data);
+  }
+
+  /** Make the batch bigger, keeping what's already in it.
+    *
+    * The native side holds a reference to the array, so it needs to be
+    * told about the new one.  It also sizes its GPU buffer based on the
+    * capacity, so this is the only time that buffer gets reallocated.
+    */
+  private void grow ()
+  {
+    int n = Math.min(capacity * 2, maxCapacity);
+    data = Arrays.copyOf(data, n*RECORD_SIZE);
+    capacity = n;
+    GFN.stampSetup(capacity, MAX_TEXTURES, data);
+  }
+
+  /** Called at the start of each frame. */
+  void beginFrame (float width, float height)
+  {
+    if (target != null)
+    {
+      GFU.log("Render texture was still being drawn into at start of frame");
+      setTarget(null);
+    }
+    if (width != canvasWidth || height != canvasHeight) forceRedraw = true;
+    canvasWidth = width;
+    canvasHeight = height;
+    if (width != viewWidth || height != viewHeight)
+    {
+      viewWidth = width;
+      viewHeight = height;
+      updateView();
+    }
+    needClear = true;
+    GFTextureManager.beginFrame();
+    if (autoSkip)
+    {
+      logging = true;
+      log.clear();
+    }
+    else
+    {
+      clear();
+    }
+  }
+
+  /** Called at the end of each frame to draw whatever is left.
+    *
+    * Returns false if the frame was skipped since it was unchanged.
+    */
+  boolean endFrame ()
+  {
+    if (!logging)
+    {
+      drawOverlay();
+      flush(GFRenderStats.FLUSH_END_OF_FRAME);
+      lastLog.valid = false;
+      stats.endFrame(false);
+      return true;
+    }
+    flush(GFRenderStats.FLUSH_END_OF_FRAME);
+    logging = false;
+    if (!forceRedraw && log.sameAs(lastLog))
+    {
+      needClear = false;
+      stats.endFrame(true);
+      return false;
+    }
+    replay(log);
+    FrameLog t = lastLog; lastLog = log; log = t;
+    lastLog.valid = true;
+    // Drawn after the comparison, since it changes every frame
+    drawOverlay();
+    flush(GFRenderStats.FLUSH_END_OF_FRAME);
+    forceRedraw = false;
+    stats.endFrame(false);
+    return true;
+  }
+
+  /** Stamps the stats overlay, if it's on (see GFGame.setStatsOverlay()). */
+  private void drawOverlay ()
+  {
+    if (overlayFont == null) return;
+    GFCamera c = camera;
+    setCamera(null);
+    stats.drawOverlay(overlayFont, 4, 4);
+    setCamera(c);
+  }
+
+  /** Clears the screen if it hasn't been already this frame. */
+  private void clear ()
+  {
+    if (!needClear) return;
+    needClear = false;
+    GFN.gl_clear(Gl.COLOR_BUFFER_BIT);
+  }
+
+  /** Stops logging batches, drawing what was logged so far.
+    *
+    * This is for when something that can't be logged is about to be
+    * drawn.  The rest of the frame is drawn directly (and the next frame
+    * won't be skipped, since this one can't be compared with it).
+    */
+  private void stopLogging ()
+  {
+    if (!logging) return;
+    drawBatch(GFRenderStats.FLUSH_OTHER); // Logs it
+    logging = false;
+    replay(log);
+    log.clear();
+    lastLog.valid = false;
+  }
+
+  /** Clears the screen and draws the batches in a log. */
+  private void replay (FrameLog l)
+  {
+    clear();
+    int src = 0;
+    for (int b = 0; b < l.batches; ++b)
+    {
+      int n = l.counts[b];
+      int nt = l.numTextures[b];
+      System.arraycopy(l.data, src, data, 0, n * RECORD_SIZE);
+      src += n * RECORD_SIZE;
+      for (int i = 0; i < nt; ++i)
+      {
+        GFTexture t = l.textures[b*MAX_TEXTURES + i];
+        texmap[i] = t;
+        t.currentIndex = i;
+      }
+      nextIndex = n;
+      nextTexture = nt;
+      for (int i = 0; i < 6; ++i)
+      {
+        float v = l.views[b*6 + i];
+        if (v != view[i])
+        {
+          view[i] = v;
+          viewDirty = true;
+        }
+      }
+      drawBatch(l.reasons[b]);
+    }
+    // Back to the current camera's view
+    updateView();
+  }
+
+  /** Switches to a different camera (or to none, if null).
+    *
+    * Anything stamped with the old camera is drawn first.
+    */
+  void setCamera (GFCamera c)
+  {
+    if (c == camera) return;
+    flush(GFRenderStats.FLUSH_CAMERA);
+    camera = c;
+    updateView();
+  }
+
+  /** Starts drawing into a render texture (or the canvas, if null).
+    *
+    * Anything stamped so far is drawn first, into wherever it was meant
+    * to go.
+    */
+  void setTarget (GFRenderTexture t)
+  {
+    if (t == target) return;
+    stopLogging();
+    flush(GFRenderStats.FLUSH_TARGET);
+    target = t;
+    GFN.renderTargetBind(t);
+    viewWidth = (t == null) ? canvasWidth : t.width;
+    viewHeight = (t == null) ? canvasHeight : t.height;
+    updateView();
+  }
+
+  /** Called by the current camera when it moves, zooms, etc. */
+  void cameraChanged ()
+  {
+    flush(GFRenderStats.FLUSH_CAMERA);
+    updateView();
+  }
+
+  /** Recomputes the view transform and the visible area for culling.
+    *
+    * The transform itself is only sent to the native side just before
+    * the next draw, so moving the camera several times between draws
+    * costs nothing extra.
+    */
+  private void updateView ()
+  {
+    if (camera == null)
+    {
+      view[0] = 1; view[1] = 0; view[2] = 0;
+      view[3] = 0; view[4] = 1; view[5] = 0;
+      visible[0] = 0;
+      visible[1] = 0;
+      visible[2] = viewWidth;
+      visible[3] = viewHeight;
+    }
+    else
+    {
+      camera.computeView(view);
+      camera.computeVisibleBounds(viewWidth, viewHeight, visible);
+    }
+    viewDirty = true;
+  }
+
+  /** Sends the view transform to the native side if it has changed. */
+  private void sendView ()
+  {
+    if (!viewDirty) return;
+    GFN.stampSetView(view[0], view[1], view[2], view[3], view[4], view[5]);
+    viewDirty = false;
+  }
+
+  /** Turns deferred mode on or off.
+    *
+    * Anything currently batched or queued is drawn first.
+    */
+  void setDeferred (boolean on)
+  {
+    flush(GFRenderStats.FLUSH_OTHER);
+    deferred = on;
   }
 
   boolean isEmpty ()
   {
-    return nextIndex == 0;
+    return nextIndex == 0 && queued == 0;
   }
 
-  void flush ()
+  /** Draws everything that has been stamped so far.
+    *
+    * The reason (one of the GFRenderStats.FLUSH_ constants) is recorded
+    * in the stats.
+    */
+  void flush (int reason)
+  {
+    if (queued != 0) drainQueue();
+    drawBatch(reason);
+  }
+
+  /** Draws the current batch. */
+  private void drawBatch (int reason)
   {
     if (nextIndex == 0) return;
-    //GFU.log("flushing ", nextTexture, " textures, and ", nextIndex, " stamps");
+    if (logging)
+    {
+      log.add(data, nextIndex, texmap, nextTexture, view, reason);
+      resetBatch();
+      return;
+    }
+    clear();
     for (int i = 0; i < nextTexture; ++i)
     {
       texmap[i].activateTexture();
     }
+    sendView();
     GFN.stampDraw(nextIndex, nextTexture);
+    GFGlState.invalidateProgram(); // The native side uses its own
+    stats.flushed(reason, nextIndex, nextTexture,
+                  (long)nextIndex * RECORD_SIZE * 4);
+    resetBatch();
+  }
+
+  /** Empties the batch and frees its texture slots. */
+  private void resetBatch ()
+  {
     nextIndex = 0;
     for (int i = 0; i < nextTexture; ++i)
     {
@@ -58,48 +526,514 @@ class GFStampManager
     nextTexture = 0;
   }
 
+  /** Draws a static batch right away.
+    *
+    * The current batch is drawn first, so the texture slots are free for
+    * the static batch to use.
+    */
+  void drawStatic (GFStaticBatch b, float dx, float dy)
+  {
+    stopLogging();
+    drawBatch(GFRenderStats.FLUSH_STATIC);
+    clear();
+    sendView();
+    for (int part = 0; part < b.counts.length; ++part)
+    {
+      GFTexture[] ts = b.textures[part];
+      for (int i = 0; i < ts.length; ++i)
+      {
+        ts[i].currentIndex = i;
+        ts[i].activateTexture();
+      }
+      GFN.staticBatchDraw(b, part, b.counts[part], ts.length, dx, dy);
+      GFGlState.invalidateProgram();
+      // The static batch's data is already on the GPU, so nothing's uploaded
+      stats.flushed(GFRenderStats.FLUSH_STATIC, b.counts[part], ts.length, 0);
+      for (int i = 0; i < ts.length; ++i) ts[i].currentIndex = -1;
+    }
+  }
+
+  /** Reserves the next batch entry for a stamp using the given texture.
+    *
+    * This grows or draws the batch if it is full, and assigns the texture
+    * a slot (drawing the batch first if the slots are all used).  It
+    * returns the entry's index; the slot is in the texture's currentIndex.
+    */
+  private int beginStamp (GFTexture t)
+  {
+    if (nextIndex == capacity)
+    {
+      if (capacity < maxCapacity) grow();
+      else drawBatch(GFRenderStats.FLUSH_CAPACITY);
+    }
+
+    if (t.currentIndex == -1)
+    {
+      if (nextTexture >= MAX_TEXTURES) drawBatch(GFRenderStats.FLUSH_TEXTURES);
+      texmap[nextTexture] = t;
+      t.currentIndex = nextTexture;
+      t.lastUsedFrame = GFTextureManager.frame;
+      ++nextTexture;
+    }
+    return nextIndex++;
+  }
+
+  /** Queues a stamp on a layer at a given depth. */
+  void stamp (GFStamp stamp, float x, float y, int layer, float depth)
+  {
+    enqueue(stamp, x, y, layer, depth);
+  }
+
   void stamp (GFStamp stamp, float x, float y)
   {
-    if (nextIndex == MAX_ITEMS) flush();
+    if (deferred)
+    {
+      enqueue(stamp, x, y, 0, 0);
+      return;
+    }
+
+    if (culling)
+    {
+      stamp.updateCache();
+      computeBounds(stamp.record, 0, x, y, bounds, 0);
+      if (!isVisible(bounds, 0))
+      {
+        ++stats.culled;
+        return;
+      }
+    }
+
+    int off = beginStamp(stamp.texture) * RECORD_SIZE;
+    writeStamp(stamp, x, y, data, off);
+    setTint(data, off, stamp.color, stamp.texture.currentIndex);
+  }
+
+  /** Stamps many copies of a stamp at once.
+    *
+    * Copy i is at xs[offset+i],ys[offset+i].  If given, angles and scales
+    * override the stamp's angle and multiply its size (and pin), and colors
+    * override its tint; any of them may be null to use the stamp's own.
+    *
+    * Records are built straight from the stamp's cached one, a whole run
+    * at a time, so this avoids most of the per-stamp overhead.  Runs are
+    * split wherever the batch has to be drawn.
+    */
+  void stampBulk (GFStamp stamp, float[] xs, float[] ys, float[] angles,
+                  float[] scales, int[] colors, int offset, int count)
+  {
+    if (deferred)
+    {
+      stampBulk(stamp, xs, ys, angles, scales, colors, offset, count, 0);
+      return;
+    }
+
+    stamp.updateCache();
+    float[] r = stamp.record;
+    GFTexture t = stamp.texture;
+    int end = offset + count;
+    int i = offset;
+    while (i < end)
+    {
+      int room = reserve(t, end - i);
+      int slot = t.currentIndex;
+      int index = nextIndex;
+      int stop = i + room;
+      for (; i < stop; ++i)
+      {
+        int off = index * RECORD_SIZE;
+        writeBulk(r, xs[i], ys[i], angles, scales, i, data, off);
+        if (culling)
+        {
+          computeBounds(data, off, bounds, 0);
+          if (!isVisible(bounds, 0))
+          {
+            ++stats.culled;
+            continue;
+          }
+        }
+        setTint(data, off, (colors == null) ? stamp.color : colors[i], slot);
+        ++index;
+      }
+      nextIndex = index;
+    }
+  }
+
+  /** Queues many copies of a stamp on a layer.
+    *
+    * The arguments are the same as the other stampBulk().
+    */
+  void stampBulk (GFStamp stamp, float[] xs, float[] ys, float[] angles,
+                  float[] scales, int[] colors, int offset, int count,
+                  int layer)
+  {
+    stamp.updateCache();
+    if (qdata == null) growQueue();
+    while (queued + count > qtex.length) growQueue();
+    float[] r = stamp.record;
+    GFTexture t = stamp.texture;
+    int end = offset + count;
+    for (int i = offset; i < end; ++i)
+    {
+      writeBulk(r, xs[i], ys[i], angles, scales, i, qdata, queued * RECORD_SIZE);
+      commitQueued(t, (colors == null) ? stamp.color : colors[i], layer, 0);
+    }
+  }
+
+  /** Stamps a run of prebuilt records which all use one texture.
+    *
+    * The records are count complete records starting at record index
+    * first in src, with their tints filled in by setTint() using slot 0.
+    * They're copied into the batch a run at a time, and then just the
+    * texture slot is patched in.  This is for things like GFTileMap which
+    * keep their records around from frame to frame.
+    */
+  void stampRecords (GFTexture t, float[] src, int first, int count)
+  {
+    if (deferred)
+    {
+      stampRecords(t, src, first, count, 0);
+      return;
+    }
+
+    int i = 0;
+    while (i < count)
+    {
+      int room = reserve(t, count - i);
+      int off = nextIndex * RECORD_SIZE;
+      System.arraycopy(src, (first + i) * RECORD_SIZE, data, off,
+                       room * RECORD_SIZE);
+      float slotBits = t.currentIndex << 16;
+      if (slotBits != 0)
+      {
+        int end = off + room * RECORD_SIZE;
+        for (int o = off + 12; o < end; o += RECORD_SIZE) data[o] += slotBits;
+      }
+      nextIndex += room;
+      i += room;
+    }
+  }
+
+  /** Queues a run of prebuilt records on a layer.
+    *
+    * The arguments are the same as the other stampRecords().
+    */
+  void stampRecords (GFTexture t, float[] src, int first, int count, int layer)
+  {
+    if (qdata == null) growQueue();
+    while (queued + count > qtex.length) growQueue();
+    for (int i = first; i < first + count; ++i)
+    {
+      int off = i * RECORD_SIZE;
+      System.arraycopy(src, off, qdata, queued * RECORD_SIZE, RECORD_SIZE);
+      int color = ((int)src[off + 12] << 16) | (int)src[off + 13];
+      commitQueued(t, color, layer, 0);
+    }
+  }
+
+  /** Makes room for up to `wanted` stamps using the given texture.
+    *
+    * This is like beginStamp(), but for a run of stamps.  It returns how
+    * many entries (at least one) are free starting at nextIndex, but
+    * doesn't claim them.
+    */
+  private int reserve (GFTexture t, int wanted)
+  {
+    while (capacity - nextIndex < wanted && capacity < maxCapacity) grow();
+    if (nextIndex == capacity) drawBatch(GFRenderStats.FLUSH_CAPACITY);
 
-    if (stamp.texture.currentIndex == -1)
+    if (t.currentIndex == -1)
     {
-      if (nextTexture >= MAX_TEXTURES) flush();
-      texmap[nextTexture] = stamp.texture;
-      stamp.texture.currentIndex = nextTexture;
+      if (nextTexture >= MAX_TEXTURES) drawBatch(GFRenderStats.FLUSH_TEXTURES);
+      texmap[nextTexture] = t;
+      t.currentIndex = nextTexture;
+      t.lastUsedFrame = GFTextureManager.frame;
       ++nextTexture;
     }
-    tex[nextIndex] = (byte)stamp.texture.currentIndex;
+    return Math.min(wanted, capacity - nextIndex);
+  }
 
-    int off = nextIndex * 8; // vinfo offset
-    vinfo[off + 0] = stamp.pinX * stamp.width; //TODO: Make the shader use relative coordinates
-    vinfo[off + 1] = stamp.pinY * stamp.height;//      so that we can skip scaling it here?
+  /** Fills in the first 12 floats of a record for stampBulk().
+    *
+    * This starts from a stamp's cached record and patches in the
+    * position, and the scale and angle if there are any.
+    */
+  private static void writeBulk (float[] r, float x, float y, float[] angles,
+                                 float[] scales, int i, float[] data, int off)
+  {
+    System.arraycopy(r, 0, data, off, GFStamp.RECORD_CACHED);
+    data[off + 4] = x;
+    data[off + 5] = y;
+    if (scales != null)
+    {
+      float sc = scales[i];
+      data[off + 0] *= sc;
+      data[off + 1] *= sc;
+      data[off + 2] *= sc;
+      data[off + 3] *= sc;
+    }
+    if (angles != null)
+    {
+      float a = angles[i];
+      data[off + 6] = GFM.sinf(a);
+      data[off + 7] = GFM.cosf(a);
+    }
+  }
 
-    vinfo[off + 2] = stamp.width;
-    vinfo[off + 3] = stamp.height;
-    //GFU.log(stamp.width, " ", stamp.height);
+  /** Fills in the first 12 floats of a stamp's record.
+    *
+    * The stamp keeps these cached, so this is mostly copying.
+    */
+  static void writeStamp (GFStamp stamp, float x, float y, float[] data, int off)
+  {
+    stamp.updateCache();
 
-    vinfo[off + 4] = x;
-    vinfo[off + 5] = y;
+    System.arraycopy(stamp.record, 0, data, off, GFStamp.RECORD_CACHED);
+    data[off + 4] = x;
+    data[off + 5] = y;
+  }
+
+  /** Fills in the tint and texture slot of a record.
+    *
+    * These are packed into two floats: the high 16 bits of the tint
+    * with the slot above them, and the low 16 bits of the tint.  Floats
+    * can hold integers this size exactly, and unlike storing the raw int
+    * bits, there's no risk of them being mangled as NaNs along the way.
+    */
+  static void setTint (float[] data, int off, int color, int slot)
+  {
+    data[off + 12] = (float)((color >>> 16) | (slot << 16));
+    data[off + 13] = (float)(color & 0xffff);
+  }
 
-    if (stamp.angle == 0)
+  /** Computes the world-space bounding box of a record.
+    *
+    * This accounts for the pin and rotation the same way the shader does.
+    * The result is stored as minx,miny,maxx,maxy.
+    */
+  static void computeBounds (float[] data, int off, float[] out, int outIndex)
+  {
+    computeBounds(data, off, data[off + 4], data[off + 5], out, outIndex);
+  }
+
+  /** Computes the bounding box of a record as if it were at x,y. */
+  static void computeBounds (float[] data, int off, float x, float y,
+                             float[] out, int outIndex)
+  {
+    float w = data[off + 2];
+    float h = data[off + 3];
+    float s = data[off + 6];
+    float c = data[off + 7];
+    // Center of the quad relative to the pin, then rotated
+    float dx = w * 0.5f - data[off + 0];
+    float dy = h * 0.5f - data[off + 1];
+    float cx = x + dx * c + dy * s;
+    float cy = y + dy * c - dx * s;
+    float as = Math.abs(s), ac = Math.abs(c);
+    w = Math.abs(w) * 0.5f;
+    h = Math.abs(h) * 0.5f;
+    float ex = ac * w + as * h;
+    float ey = as * w + ac * h;
+    int o = outIndex * 4;
+    out[o + 0] = cx - ex;
+    out[o + 1] = cy - ey;
+    out[o + 2] = cx + ex;
+    out[o + 3] = cy + ey;
+  }
+
+  /** Checks whether a bounding box overlaps the visible area.
+    *
+    * With a rotated camera, the visible area is the bounding box of the
+    * rotated canvas, so a few stamps just past the corners get drawn even
+    * though they aren't visible.
+    */
+  private boolean isVisible (float[] b, int index)
+  {
+    int o = index * 4;
+    return b[o + 2] > visible[0] && b[o + 0] < visible[2] &&
+           b[o + 3] > visible[1] && b[o + 1] < visible[3];
+  }
+
+  /** Converts a depth into an int which sorts the same way as unsigned.
+    *
+    * For positive floats, the raw bits already sort correctly; they just
+    * need the sign bit set so that they come after the negatives.  For
+    * negative floats, flipping all the bits reverses their order.
+    */
+  private static int depthKey (float depth)
+  {
+    int bits = Float.floatToRawIntBits(depth);
+    return bits ^ ((bits >> 31) | Integer.MIN_VALUE);
+  }
+
+  /** Records a stamp into the render queue. */
+  private void enqueue (GFStamp stamp, float x, float y, int layer, float depth)
+  {
+    if (qdata == null || queued == qtex.length) growQueue();
+    writeStamp(stamp, x, y, qdata, queued * RECORD_SIZE);
+    commitQueued(stamp.texture, stamp.color, layer, depth);
+  }
+
+  /** Finishes queuing the record which was written just past the end of
+    * the queue (or culls it).
+    */
+  private void commitQueued (GFTexture t, int color, int layer, float depth)
+  {
+    int i = queued;
+    computeBounds(qdata, i * RECORD_SIZE, qbounds, i);
+    if (culling && !isVisible(qbounds, i))
+    {
+      ++stats.culled;
+      return;
+    }
+    ++queued;
+    qcolors[i] = color;
+    qtex[i] = t;
+    qlayers[i] = layer ^ Integer.MIN_VALUE;
+    qdepths[i] = depthKey(depth);
+    if (layer != 0 || depth != 0) keyed = true;
+  }
+
+  private void growQueue ()
+  {
+    int n = (qdata == null) ? DEFAULT_CAPACITY : qtex.length * 2;
+    if (qdata == null)
     {
-      vinfo[off + 6] = 0;
-      vinfo[off + 7] = 1;
+      qdata = new float[n*RECORD_SIZE];
+      qcolors = new int[n];
+      qtex = new GFTexture[n];
+      qlayers = new int[n];
+      qdepths = new int[n];
+      qbounds = new float[n*4];
     }
     else
     {
-      vinfo[off + 6] = sinf(stamp.angle);
-      vinfo[off + 7] = cosf(stamp.angle);
+      qdata = Arrays.copyOf(qdata, n*RECORD_SIZE);
+      qcolors = Arrays.copyOf(qcolors, n);
+      qtex = Arrays.copyOf(qtex, n);
+      qlayers = Arrays.copyOf(qlayers, n);
+      qdepths = Arrays.copyOf(qdepths, n);
+      qbounds = Arrays.copyOf(qbounds, n*4);
+    }
+    qorder = new int[n];
+    qscratch = new int[n];
+  }
+
+  /** Copies a queued stamp into the current batch. */
+  private void emitQueued (int i)
+  {
+    GFTexture t = qtex[i];
+    int off = beginStamp(t) * RECORD_SIZE;
+    System.arraycopy(qdata, i*RECORD_SIZE, data, off, RECORD_SIZE);
+    setTint(data, off, qcolors[i], t.currentIndex);
+  }
+
+  /** Checks whether a queued stamp overlaps any of the first n skipped ones. */
+  private boolean overlapsSkipped (int i, int n)
+  {
+    float x0 = qbounds[i*4+0], y0 = qbounds[i*4+1];
+    float x1 = qbounds[i*4+2], y1 = qbounds[i*4+3];
+    for (int j = 0; j < n*4; j += 4)
+    {
+      if (x0 < skipped[j+2] && skipped[j+0] < x1 &&
+          y0 < skipped[j+3] && skipped[j+1] < y1) return true;
+    }
+    return false;
+  }
+
+  /** Orders, batches, and draws the render queue. */
+  private void drainQueue ()
+  {
+    int n = queued;
+    int[] order = qorder;
+    for (int i = 0; i < n; ++i) order[i] = i;
+    if (keyed) sortQueue(n);
+
+    // Each pass walks the remaining stamps in order.  Stamps which fit in
+    // the current batch's textures are drawn unless they overlap one that
+    // was skipped earlier in the pass; the rest are skipped and left for
+    // a later pass.  The first stamp of a pass is always drawn, so every
+    // pass makes progress.
+    int remaining = n;
+    while (remaining != 0)
+    {
+      int numSkipped = 0;
+      int kept = 0;
+      int p = 0;
+      for (; p < remaining; ++p)
+      {
+        int i = order[p];
+        GFTexture t = qtex[i];
+        boolean fits = t.currentIndex != -1 || nextTexture < MAX_TEXTURES;
+        if (p == 0 || (fits && !overlapsSkipped(i, numSkipped)))
+        {
+          emitQueued(i);
+          continue;
+        }
+        if (numSkipped == MAX_SKIPPED) break;
+        System.arraycopy(qbounds, i*4, skipped, numSkipped*4, 4);
+        ++numSkipped;
+        order[kept++] = i;
+      }
+      // Whatever we didn't get to is still waiting
+      for (; p < remaining; ++p) order[kept++] = order[p];
+      remaining = kept;
     }
 
-    tcs[nextIndex * 4 + 0] = stamp.u0;
-    tcs[nextIndex * 4 + 1] = stamp.v0;
-    tcs[nextIndex * 4 + 2] = stamp.u1;
-    tcs[nextIndex * 4 + 3] = stamp.v1;
+    Arrays.fill(qtex, 0, n, null);
+    queued = 0;
+    keyed = false;
+  }
 
-    colors[nextIndex] = stamp.color;
+  /** Stable sort of the first n entries of qorder by layer, then depth.
+    *
+    * This is an LSD radix sort, a byte at a time: four passes over the
+    * depth keys followed by four over the layer keys, so the last passes
+    * put the stamps into their layer buckets.  Counts for all eight passes
+    * are gathered up front, and passes where every stamp lands in the same
+    * bucket (e.g., the high bytes of small layer numbers) are skipped.
+    */
+  private void sortQueue (int n)
+  {
+    int[] counts = radixCounts;
+    Arrays.fill(counts, 0);
+    for (int i = 0; i < n; ++i)
+    {
+      int d = qdepths[i];
+      int l = qlayers[i];
+      ++counts[         (d         & 0xff)];
+      ++counts[256*1 + ((d >>>  8) & 0xff)];
+      ++counts[256*2 + ((d >>> 16) & 0xff)];
+      ++counts[256*3 + ((d >>> 24)       )];
+      ++counts[256*4 + ( l         & 0xff)];
+      ++counts[256*5 + ((l >>>  8) & 0xff)];
+      ++counts[256*6 + ((l >>> 16) & 0xff)];
+      ++counts[256*7 + ((l >>> 24)       )];
+    }
 
-    ++nextIndex;
+    int[] src = qorder;
+    int[] dst = qscratch;
+    for (int pass = 0; pass < 8; ++pass)
+    {
+      int[] keys = (pass < 4) ? qdepths : qlayers;
+      int shift = (pass & 3) * 8;
+      int base = pass * 256;
+      if (counts[base + ((keys[src[0]] >>> shift) & 0xff)] == n) continue;
+
+      // Turn the counts into starting offsets
+      int sum = 0;
+      for (int b = base; b < base + 256; ++b)
+      {
+        int c = counts[b];
+        counts[b] = sum;
+        sum += c;
+      }
+      for (int p = 0; p < n; ++p)
+      {
+        int i = src[p];
+        dst[counts[base + ((keys[i] >>> shift) & 0xff)]++] = i;
+      }
+      int[] t = src; src = dst; dst = t;
+    }
+    if (src != qorder) System.arraycopy(src, 0, qorder, 0, n);
   }
 }
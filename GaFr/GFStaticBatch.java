@@ -0,0 +1,141 @@
+package GaFr;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/** A group of stamps which is sent to the graphics hardware only once.
+  *
+  * Normally, every stamp you draw gets sent to the graphics hardware on
+  * every frame.  That's a waste for things that never change, like a tiled
+  * background or the walls of a level.  A static batch takes a snapshot
+  * of a group of stamps (their textures, positions, rotations, colors,
+  * and so on) and uploads it once.  After that, drawing the whole group
+  * costs about the same as drawing a single stamp.  You can still move the
+  * whole group around (e.g., to scroll it) by drawing it at an offset.
+  *
+  * Changing the stamps after building the batch has no effect on it.  If
+  * you need to change something, build a new batch (and dispose() of the
+  * old one).
+  *
+  * A static batch is drawn right away when you call draw(), so it ends up
+  * underneath anything stamped on a layer (and underneath everything if
+  * deferred stamping is turned on).  That's usually what you want for
+  * backgrounds.
+  */
+public class GFStaticBatch
+{
+  /** The textures used by each part of the batch.
+    *
+    * Only so many textures can be used in a single draw, so a batch with
+    * lots of textures is split into several parts.
+    */
+  protected GFTexture[][] textures;
+
+  /** The number of stamps in each part of the batch. */
+  protected int[] counts;
+
+  public float x; ///< The offset the batch is drawn at by draw().
+  public float y; ///< The offset the batch is drawn at by draw().
+
+  /** Builds a batch from the given stamps.
+    *
+    * Each stamp is captured as it is right now, at its current position.
+    */
+  public GFStaticBatch (GFStamp... stamps)
+  {
+    this(Arrays.asList(stamps));
+  }
+
+  /// \overload
+  public GFStaticBatch (Iterable<GFStamp> stamps)
+  {
+    ArrayList<GFStamp> all = new ArrayList<>();
+    for (GFStamp s : stamps) all.add(s);
+
+    ArrayList<GFTexture[]> partTextures = new ArrayList<>();
+    ArrayList<Integer> partCounts = new ArrayList<>();
+    GFTexture[] texmap = new GFTexture[GFStampManager.MAX_TEXTURES];
+
+    int start = 0;
+    while (start < all.size())
+    {
+      // Find how many stamps we can fit before running out of textures
+      int numTextures = 0;
+      int end = start;
+      for (; end < all.size(); ++end)
+      {
+        GFTexture t = all.get(end).texture;
+        if (indexOf(texmap, numTextures, t) != -1) continue;
+        if (numTextures == texmap.length) break;
+        texmap[numTextures++] = t;
+      }
+
+      int n = end - start;
+      float[] data = new float[n*GFStampManager.RECORD_SIZE];
+      for (int i = 0; i < n; ++i)
+      {
+        GFStamp s = all.get(start + i);
+        int off = i * GFStampManager.RECORD_SIZE;
+        GFStampManager.writeStamp(s, s.x, s.y, data, off);
+        GFStampManager.setTint(data, off, s.color, indexOf(texmap, numTextures, s.texture));
+      }
+
+      GFN.staticBatchUpload(this, partTextures.size(), data, n);
+      partTextures.add(Arrays.copyOf(texmap, numTextures));
+      partCounts.add(n);
+      start = end;
+    }
+
+    textures = partTextures.toArray(new GFTexture[0][]);
+    counts = new int[partCounts.size()];
+    for (int i = 0; i < counts.length; ++i) counts[i] = partCounts.get(i);
+  }
+
+  private static int indexOf (GFTexture[] texmap, int n, GFTexture t)
+  {
+    for (int i = 0; i < n; ++i)
+      if (texmap[i] == t) return i;
+    return -1;
+  }
+
+  /** The number of stamps in the batch. */
+  public int size ()
+  {
+    int n = 0;
+    for (int c : counts) n += c;
+    return n;
+  }
+
+  /** Set the offset used by draw(). */
+  public GFStaticBatch moveTo (float x, float y)
+  {
+    this.x = x;
+    this.y = y;
+    return this;
+  }
+
+  /** Draw the batch at its current offset.
+    *
+    * This should be called from within GFGame.onDraw().
+    */
+  public void draw ()
+  {
+    draw(x, y);
+  }
+
+  /** Draw the batch offset by dx and dy. */
+  public void draw (float dx, float dy)
+  {
+    GFBoot.game._stampManager.drawStatic(this, dx, dy);
+  }
+
+  /** Frees the batch's memory on the graphics hardware.
+    *
+    * The batch can't be drawn after this.
+    */
+  public void dispose ()
+  {
+    GFN.staticBatchDelete(this);
+    textures = new GFTexture[0][];
+    counts = new int[0];
+  }
+}
@@ -1,7 +1,4 @@
 package GaFr;
-import java.awt.image.BufferedImage;
-import javax.imageio.ImageIO;
-import java.awt.Graphics;
 
 /**
   * A texture.
@@ -35,6 +32,37 @@ public class GFTexture
   /** Internal use */
   public int currentIndex = -1;
 
+  // The parameters as last set in WebGL (-1 if unknown); see GFGlState
+  int glWrapS = -1, glWrapT = -1, glMinFilter = -1, glMagFilter = -1;
+
+  /** Most separate changed regions kept before they're all merged. */
+  static final int MAX_DIRTY_RECTS = 8;
+
+  // Regions changed by update() which haven't been uploaded yet, as
+  // x,y,w,h, and the image they come from.
+  private int[] dirty;
+  private int numDirty = 0;
+  private GFPixels updateSource;
+
+  // Whether generateMipmap() has been called (so updates redo it)
+  private boolean hasMipmaps = false;
+
+  // Whether the image was too big and a smaller copy was uploaded (so
+  // update() can't be used)
+  private boolean downscaled = false;
+
+  // For GFTextureManager: where the pixels came from (so the texture can
+  // be reloaded after being evicted), how much memory it takes, whether
+  // it's in graphics memory (and its entry, if the manager is tracking
+  // it), and the last frame it was used.
+  private GFPixels sourcePixels;
+  private String sourceFile;
+  private int sourceInColor, sourceOutColor;
+  int bytes;
+  boolean resident = false;
+  GFTextureManager.Entry entry;
+  int lastUsedFrame;
+
   /** Loads a texture.
     *
     * The file can probably be a png, jpg, gif, or webm.  png is a solid
@@ -64,6 +92,11 @@ public class GFTexture
     loadTexture(img, 0, 0);
   }
 
+  /// For subclasses which create the texture some other way.
+  protected GFTexture ()
+  {
+  }
+
   /// Internal use.
   protected void loadTexture (GFPixels img, int inColor, int outColor)
   {
@@ -76,6 +109,13 @@ public class GFTexture
     width = img.width;
     height = img.height;
 
+    if (sourceFile == null && GFTextureManager.getBudget() > 0) sourcePixels = img;
+    upload(img);
+  }
+
+  /** Creates the texture in graphics memory from an image. */
+  private void upload (GFPixels img)
+  {
     if (width > MAX_TEXTURE_SIZE || height > MAX_TEXTURE_SIZE)
     {
       // This will result in a loss of quality, but oh well!
@@ -84,22 +124,73 @@ public class GFTexture
       GFU.log("Warning: Texture size ",img.width,"x",img.height,
               " is too large; rescaling to ",ww,"x",hh,".");
       //TODO: The above should probably be GFU.warn().
-      BufferedImage src = img.toBufferedImage();
-      BufferedImage scaled = new BufferedImage(ww, hh, src.getType());
-      Graphics g = scaled.createGraphics();
-      g.drawImage(src, 0, 0, ww, hh, null);
-      g.dispose();
-      img = new GFPixels(scaled);
+      img = img.resized(ww, hh, GFPixels.FILTER_BOX);
+      downscaled = true;
     }
 
     GFN.gl_createTexture(this);
 
     // We always use unit 7 for loading/etc.
     //FIXME: We should probably be using 0, if anything
-    GFN.gl_activeTexture(Gl.TEXTURE0 + 7);
-    GFN.gl_bindTexture(Gl.TEXTURE_2D, this);
+    GFGlState.activeTexture(Gl.TEXTURE0 + 7);
+    GFGlState.bindTexture(this);
 
     GFN.gl_texImage2D(0, Gl.RGBA, img.width, img.height, Gl.RGBA, img.pix, 0);
+    if (hasMipmaps) GFN.gl_generateMipmap(Gl.TEXTURE_2D);
+
+    bytes = img.width * img.height * 4;
+    if (hasMipmaps) bytes += bytes / 3;
+    GFTextureManager.added(this);
+  }
+
+  /** Frees the texture's graphics memory for good.
+    *
+    * Textures the game stops using are freed eventually anyway, but this
+    * frees the memory right away, which is handy since there often isn't
+    * much of it.  Don't draw the texture (or stamps of it) afterwards --
+    * including stamps from earlier in the same frame, which may not have
+    * been drawn yet.
+    */
+  public void dispose ()
+  {
+    if (resident)
+    {
+      GFTextureManager.removed(this);
+      unload();
+    }
+    sourcePixels = null;
+    sourceFile = null;
+  }
+
+  /// Whether the texture knows how to load itself again after eviction.
+  boolean canReload ()
+  {
+    return sourcePixels != null || sourceFile != null;
+  }
+
+  /// Frees the texture's graphics memory (see GFTextureManager.evict()).
+  void unload ()
+  {
+    GFN.gl_deleteTexture(this);
+    GFGlState.forgetTexture(this);
+    // Whatever update() was waiting to send will be in the reload
+    numDirty = 0;
+    updateSource = null;
+  }
+
+  /// Loads an evicted texture again (see GFTextureManager.reload()).
+  void reload ()
+  {
+    if (!canReload())
+      throw new RuntimeException("Can't use a GFTexture after dispose()");
+    GFPixels img = sourcePixels;
+    if (img == null)
+    {
+      img = new GFPixels(sourceFile);
+      if (sourceInColor != sourceOutColor)
+        img = img.replaceColor(sourceInColor, sourceOutColor);
+    }
+    upload(img);
   }
 
   /** Generate mipmaps for this texture.
@@ -108,15 +199,153 @@ public class GFTexture
     */
   public void generateMipmap ()
   {
-    GFN.gl_activeTexture(Gl.TEXTURE0 + 7);
-    GFN.gl_bindTexture(Gl.TEXTURE_2D, this);
+    if (!resident) GFTextureManager.reload(this);
+    GFGlState.activeTexture(Gl.TEXTURE0 + 7);
+    GFGlState.bindTexture(this);
 
     GFN.gl_generateMipmap(Gl.TEXTURE_2D);
+    if (!hasMipmaps)
+    {
+      hasMipmaps = true;
+      // Mipmaps take about another third
+      GFTextureManager.untrack(this);
+      bytes += bytes / 3;
+      GFTextureManager.track(this);
+    }
+  }
+
+  /** Changes part of the texture.
+    *
+    * src is an image the same size as the texture (e.g., the one it was
+    * made from, after you've drawn on it), and x, y, w, h is the part of
+    * it which changed.  Only that part is sent to the graphics hardware,
+    * which is much faster than making a new texture.
+    *
+    * Nothing is actually sent until just before the texture is next
+    * drawn, and all the changes made before then are sent together, with
+    * overlapping and nearby regions merged.  So you can call this lots of
+    * times per frame (e.g., once per brush stroke in a paint program).
+    * Keep in mind that src is read then, not now, and that stamps of this
+    * texture which were stamped earlier in the frame but haven't been
+    * drawn yet will show the change too.
+    *
+    * This doesn't work on textures made from images bigger than
+    * MAX_TEXTURE_SIZE (since what's in the texture is a shrunken copy).
+    */
+  public GFTexture update (GFPixels src, int x, int y, int w, int h)
+  {
+    if (downscaled)
+      throw new RuntimeException("Can't update() a texture which was shrunk to fit MAX_TEXTURE_SIZE");
+    if (src.width != width || src.height != height)
+      throw new RuntimeException("update() needs an image the same size as the texture");
+
+    if (x < 0) { w += x; x = 0; }
+    if (y < 0) { h += y; y = 0; }
+    w = Math.min(w, width - x);
+    h = Math.min(h, height - y);
+    if (w <= 0 || h <= 0) return this;
+
+    // If it gets evicted, it has to come back with the changes
+    if (canReload())
+    {
+      sourcePixels = src;
+      sourceFile = null;
+    }
+    if (!resident) return this; // The reload will send everything
+
+    if (updateSource != null && updateSource != src)
+    {
+      // Can't mix regions from different images; send the old ones now
+      GFGlState.activeTexture(Gl.TEXTURE0 + 7);
+      GFGlState.bindTexture(this);
+      uploadUpdates();
+    }
+    updateSource = src;
+    addDirty(x, y, w, h);
+
+    // Auto-skipping can't see texture changes (see GFGame.setAutoSkipFrames())
+    if (GFBoot.game != null) GFBoot.game.requestRedraw();
+    return this;
+  }
+
+  /// \overload Updates the whole texture.
+  public GFTexture update (GFPixels src)
+  {
+    return update(src, 0, 0, width, height);
+  }
+
+  /** Adds a changed region, merging it with others where that's cheaper.
+    *
+    * Two regions are merged if the rectangle around both isn't any
+    * bigger than the two of them separately (e.g., they overlap a lot or
+    * are right next to each other).
+    */
+  private void addDirty (int x, int y, int w, int h)
+  {
+    if (dirty == null) dirty = new int[MAX_DIRTY_RECTS * 4];
+    boolean merged = true;
+    while (merged)
+    {
+      merged = false;
+      for (int i = 0; i < numDirty; ++i)
+      {
+        int o = i * 4;
+        int ux = Math.min(x, dirty[o]), uy = Math.min(y, dirty[o + 1]);
+        int uw = Math.max(x + w, dirty[o] + dirty[o + 2]) - ux;
+        int uh = Math.max(y + h, dirty[o + 1] + dirty[o + 3]) - uy;
+        if ((long)uw * uh > (long)w * h + (long)dirty[o + 2] * dirty[o + 3]) continue;
+        x = ux; y = uy; w = uw; h = uh;
+        // Remove this one (the new region replaces it)
+        --numDirty;
+        System.arraycopy(dirty, numDirty * 4, dirty, o, 4);
+        merged = true;
+        break;
+      }
+    }
+
+    if (numDirty == MAX_DIRTY_RECTS)
+    {
+      // Too many; just send everything around all of them
+      for (int i = 0; i < numDirty; ++i)
+      {
+        int o = i * 4;
+        int x1 = Math.max(x + w, dirty[o] + dirty[o + 2]);
+        int y1 = Math.max(y + h, dirty[o + 1] + dirty[o + 3]);
+        x = Math.min(x, dirty[o]);
+        y = Math.min(y, dirty[o + 1]);
+        w = x1 - x;
+        h = y1 - y;
+      }
+      numDirty = 0;
+    }
+
+    int o = numDirty++ * 4;
+    dirty[o] = x;
+    dirty[o + 1] = y;
+    dirty[o + 2] = w;
+    dirty[o + 3] = h;
+  }
+
+  /** Sends regions changed by update() to the bound texture. */
+  private void uploadUpdates ()
+  {
+    for (int i = 0; i < numDirty; ++i)
+    {
+      int o = i * 4;
+      GFN.gl_texSubImage2D(0, dirty[o], dirty[o + 1], dirty[o + 2], dirty[o + 3], Gl.RGBA,
+                           updateSource.pix, dirty[o + 1] * width + dirty[o], width);
+    }
+    if (hasMipmaps) GFN.gl_generateMipmap(Gl.TEXTURE_2D);
+    numDirty = 0;
+    updateSource = null;
   }
 
   /// Internal use.
   protected void loadTexture (String fileName, int inColor, int outColor)
   {
+    sourceFile = fileName;
+    sourceInColor = inColor;
+    sourceOutColor = outColor;
     loadTexture( new GFPixels(fileName), inColor, outColor );
     // The code that used to be here is somewhat more efficient in cases
     // where a texture needs to be resized to be loaded.  It has been
@@ -243,17 +472,24 @@ public class GFTexture
     return s;
   }
 
-  /** Internal use */
+  /** Internal use
+    *
+    * This goes through GFGlState, so it only costs native calls for
+    * whatever has actually changed since the texture was last used.
+    */
   public void activateTexture ()
   {
     assert currentIndex >= 0;
-    GFN.gl_activeTexture(Gl.TEXTURE0 + currentIndex);
-    GFN.gl_bindTexture(Gl.TEXTURE_2D, this);
+    if (!resident) GFTextureManager.reload(this);
+    lastUsedFrame = GFTextureManager.frame;
+    GFGlState.activeTexture(Gl.TEXTURE0 + currentIndex);
+    GFGlState.bindTexture(this);
+    if (numDirty != 0) uploadUpdates();
 
-    GFN.gl_texParameteri(Gl.TEXTURE_2D, Gl.TEXTURE_WRAP_S, wrapS);
-    GFN.gl_texParameteri(Gl.TEXTURE_2D, Gl.TEXTURE_WRAP_T, wrapT);
-    GFN.gl_texParameteri(Gl.TEXTURE_2D, Gl.TEXTURE_MIN_FILTER, minFilter);
-    GFN.gl_texParameteri(Gl.TEXTURE_2D, Gl.TEXTURE_MAG_FILTER, magFilter);
+    GFGlState.texParameteri(this, Gl.TEXTURE_WRAP_S, wrapS);
+    GFGlState.texParameteri(this, Gl.TEXTURE_WRAP_T, wrapT);
+    GFGlState.texParameteri(this, Gl.TEXTURE_MIN_FILTER, minFilter);
+    GFGlState.texParameteri(this, Gl.TEXTURE_MAG_FILTER, magFilter);
     //GFU.log("activated texture ", currentIndex);
   }
 }
@@ -0,0 +1,227 @@
+package GaFr;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+
+/** Keeps the memory used by textures under a budget.
+  *
+  * Normally every texture stays in graphics memory until the game ends,
+  * which is fine for small games but not for ones with lots of levels
+  * (especially on machines without much graphics memory, like cheap
+  * Chromebooks).  If you set a budget with setBudget(), then at the start
+  * of each frame, if textures are using more than that, the ones which
+  * have gone unused the longest are evicted (freed) until they're under
+  * it again.  An evicted texture is loaded again the next time it's
+  * drawn, so apart from that frame taking a bit longer, you won't notice.
+  *
+  * To be reloaded, a texture has to know where its pixels came from.
+  * Textures loaded from files just load the file again.  Textures made
+  * from a GFPixels keep a reference to it, but only if a budget was set
+  * when they were made (otherwise they'd keep lots of images alive for no
+  * reason), so set the budget early.  Textures which can't be reloaded
+  * (including GFRenderTextures) are counted but never evicted.  Textures
+  * used in the last frame are never evicted either, so if the budget is
+  * too small for what's on screen, it'll just be exceeded.
+  *
+  * A texture made from a GFPixels is reloaded from that GFPixels as it is
+  * then, so if you change it, the texture changes too.  If you use
+  * GFTexture.update(), the image you give it becomes the one it's
+  * reloaded from.
+  *
+  * Only textures made while there's a budget are tracked (and counted by
+  * getResidentBytes()), and they're only tracked weakly, so textures the
+  * game stops referring to are still garbage collected as usual.  To free
+  * a texture's memory right away, for good, use GFTexture.dispose().
+  */
+public class GFTextureManager
+{
+  private static long budget = 0; // 0 means no limit
+  private static long residentBytes = 0;
+  private static long evictions = 0, reloads = 0;
+
+  /// Internal use.  The number of the frame in progress.
+  static int frame = 0;
+
+  /** Internal use.  A tracked texture.
+    *
+    * This refers to the texture weakly, so it can still be collected, and
+    * remembers its size and where it is in the list so that it can be
+    * taken out quickly either way.
+    */
+  static final class Entry extends WeakReference<GFTexture>
+  {
+    final int bytes;
+    int index;
+
+    Entry (GFTexture t)
+    {
+      super(t, collected);
+      bytes = t.bytes;
+    }
+  }
+
+  // Tracked textures which are in graphics memory, and the queue their
+  // entries go on when the textures are garbage collected
+  private static final ArrayList<Entry> tracked = new ArrayList<>();
+  private static final ReferenceQueue<GFTexture> collected = new ReferenceQueue<>();
+
+  /** Sets the most bytes of texture memory to use (0 for no limit).
+    *
+    * Set this before loading textures; only textures made while there's
+    * a budget are tracked.  Setting it to 0 stops tracking them all.
+    */
+  public static void setBudget (long bytes)
+  {
+    budget = Math.max(bytes, 0);
+    if (budget != 0) return;
+    for (Entry e : tracked)
+    {
+      GFTexture t = e.get();
+      if (t != null) t.entry = null;
+      e.clear();
+    }
+    tracked.clear();
+    residentBytes = 0;
+  }
+
+  /** Gets the budget set with setBudget(). */
+  public static long getBudget ()
+  {
+    return budget;
+  }
+
+  /** Gets (roughly) how many bytes tracked textures are using right now. */
+  public static long getResidentBytes ()
+  {
+    purge();
+    return residentBytes;
+  }
+
+  /** Gets how many tracked textures are in graphics memory right now. */
+  public static int getResidentCount ()
+  {
+    purge();
+    return tracked.size();
+  }
+
+  /** Gets how many times textures have been evicted. */
+  public static long getEvictions ()
+  {
+    return evictions;
+  }
+
+  /** Gets how many times evicted textures have been loaded again. */
+  public static long getReloads ()
+  {
+    return reloads;
+  }
+
+  /** Evicts a texture now, if it can be reloaded.
+    *
+    * This is handy when you know you're done with something for a while
+    * (e.g., at the end of a level).  Returns true if it was evicted.  If
+    * you're done with it for good, use GFTexture.dispose() instead, which
+    * works on any texture.
+    */
+  public static boolean evict (GFTexture t)
+  {
+    if (!t.resident || !t.canReload() || t.currentIndex != -1) return false;
+    removed(t);
+    t.unload();
+    ++evictions;
+    return true;
+  }
+
+  /// Internal use.  Called when a texture goes into graphics memory.
+  static void added (GFTexture t)
+  {
+    if (t.resident) return;
+    t.resident = true;
+    t.lastUsedFrame = frame;
+    track(t);
+  }
+
+  /// Internal use.  Called when a texture's memory is freed.
+  static void removed (GFTexture t)
+  {
+    if (!t.resident) return;
+    t.resident = false;
+    untrack(t);
+  }
+
+  /// Internal use.  Starts tracking a texture, if there's a budget.
+  static void track (GFTexture t)
+  {
+    if (budget == 0 || t.entry != null) return;
+    Entry e = t.entry = new Entry(t);
+    e.index = tracked.size();
+    tracked.add(e);
+    residentBytes += e.bytes;
+  }
+
+  /// Internal use.  Stops tracking a texture (e.g., if its size changes).
+  static void untrack (GFTexture t)
+  {
+    Entry e = t.entry;
+    if (e == null) return;
+    t.entry = null;
+    e.clear(); // So it's never queued
+    remove(e);
+  }
+
+  private static void remove (Entry e)
+  {
+    if (e.index == -1) return;
+    residentBytes -= e.bytes;
+    // Move the last one into its place, so removal doesn't have to search
+    Entry moved = tracked.remove(tracked.size() - 1);
+    if (moved != e)
+    {
+      tracked.set(e.index, moved);
+      moved.index = e.index;
+    }
+    e.index = -1;
+  }
+
+  /** Stops tracking textures which have been garbage collected. */
+  private static void purge ()
+  {
+    Reference<? extends GFTexture> r;
+    while ((r = collected.poll()) != null) remove((Entry)r);
+  }
+
+  /// Internal use.  Loads an evicted texture again.
+  static void reload (GFTexture t)
+  {
+    t.reload();
+    ++reloads;
+  }
+
+  /** Internal use.  Called by GFStampManager at the start of each frame.
+    *
+    * If textures are over budget, this evicts the least recently used
+    * ones.
+    */
+  static void beginFrame ()
+  {
+    ++frame;
+    purge();
+    if (budget == 0 || residentBytes <= budget) return;
+
+    ArrayList<GFTexture> candidates = new ArrayList<>();
+    for (Entry e : tracked)
+    {
+      GFTexture t = e.get();
+      if (t != null && t.lastUsedFrame < frame - 1 && t.canReload())
+        candidates.add(t);
+    }
+    candidates.sort((a, b) -> Integer.compare(a.lastUsedFrame, b.lastUsedFrame));
+
+    for (GFTexture t : candidates)
+    {
+      if (residentBytes <= budget) break;
+      evict(t);
+    }
+  }
+}
@@ -0,0 +1,341 @@
+package GaFr;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/** Packs lots of small images into a few big textures.
+  *
+  * Every texture a frame uses takes up one of a handful of texture slots,
+  * and running out of slots means an extra (slow) draw call.  If a scene
+  * is drawn from dozens of separate little images, it's much faster to
+  * put them all into one or two big textures and draw parts of those.
+  * TextureAtlas does that for atlases made ahead of time by a tool; this
+  * does it while the game is running.
+  *
+  * Add images with add(), then call pack().  That arranges them into
+  * pages (using the "skyline" method, putting each image as low and as far
+  * left as it fits), makes one GFTexture per page, and gives you back a
+  * GFStamp for each image, in the order they were added:
+  *
+  * ```
+  * GFTexturePacker packer = new GFTexturePacker();
+  * packer.add("player", new GFPixels("player.png"));
+  * packer.add("enemy", new GFPixels("enemy.png"));
+  * packer.pack();
+  * GFStamp player = packer.get("player");
+  * ```
+  *
+  * Each image is surrounded by padding pixels which copy its edges, so
+  * that linear filtering doesn't bleed neighbors into it.  Images too big
+  * for a page get a texture of their own.  You can add more images and
+  * call pack() again; they go on new pages.
+  */
+public class GFTexturePacker
+{
+  /** Default size of each page (if the hardware allows it). */
+  public static final int DEFAULT_PAGE_SIZE = 2048;
+
+  /** Pixels of padding around each image. */
+  public int padding = 1;
+
+  /** Whether to shrink each page's height to what's actually used. */
+  public boolean trimPages = true;
+
+  private final int pageWidth, pageHeight;
+
+  // Images waiting for pack()
+  private final ArrayList<GFPixels> pending = new ArrayList<>();
+  private final ArrayList<String> pendingNames = new ArrayList<>();
+
+  private final ArrayList<GFStamp> stamps = new ArrayList<>();
+  private final HashMap<String, GFStamp> named = new HashMap<>();
+  private final ArrayList<GFTexture> textures = new ArrayList<>();
+
+  /** Creates a packer with the default page size. */
+  public GFTexturePacker ()
+  {
+    this(DEFAULT_PAGE_SIZE, DEFAULT_PAGE_SIZE);
+  }
+
+  /** Creates a packer with pages of the given size.
+    *
+    * Neither dimension can be bigger than GFTexture.MAX_TEXTURE_SIZE; if
+    * they are, they're reduced.
+    */
+  public GFTexturePacker (int pageWidth, int pageHeight)
+  {
+    this.pageWidth = Math.min(pageWidth, GFTexture.MAX_TEXTURE_SIZE);
+    this.pageHeight = Math.min(pageHeight, GFTexture.MAX_TEXTURE_SIZE);
+  }
+
+  /** Adds an image to be packed.
+    *
+    * Returns the index of its stamp (see get(int)).  The pixels are only
+    * read by pack().
+    */
+  public int add (GFPixels pix)
+  {
+    return add(null, pix);
+  }
+
+  /** Adds a named image to be packed.
+    *
+    * Returns the index of its stamp.  You can also get it with
+    * get(String) after packing.
+    */
+  public int add (String name, GFPixels pix)
+  {
+    pending.add(pix);
+    pendingNames.add(name);
+    return stamps.size() + pending.size() - 1;
+  }
+
+  /// \overload Loads the image from a file, which is also its name.
+  public int add (String fileName)
+  {
+    return add(fileName, new GFPixels(fileName));
+  }
+
+  /** Gets the stamp for the image with the given index.
+    *
+    * The index is the one add() returned.  Only valid after pack().
+    */
+  public GFStamp get (int index)
+  {
+    return stamps.get(index);
+  }
+
+  /** Gets the stamp for the image with the given name (or null). */
+  public GFStamp get (String name)
+  {
+    return named.get(name);
+  }
+
+  /** Gets the number of images which have been packed. */
+  public int size ()
+  {
+    return stamps.size();
+  }
+
+  /** Gets the textures for all the pages made so far. */
+  public GFTexture[] getTextures ()
+  {
+    return textures.toArray(new GFTexture[0]);
+  }
+
+  /** A rectangle being placed. */
+  private static class Rect
+  {
+    int index; // In pending
+    int w, h; // Including padding
+    int x, y; // Of the padded area
+    int page = -1;
+  }
+
+  /** A page being filled.
+    *
+    * The skyline is the top edge of everything placed so far, as a list
+    * of horizontal segments from left to right.  An image always goes
+    * with its left edge at the start of a segment, resting on the highest
+    * skyline underneath it.
+    */
+  private static class Page
+  {
+    int[] segX = new int[16], segY = new int[16], segW = new int[16];
+    int segments = 1;
+    int used; // Height actually used
+
+    Page (int width)
+    {
+      segW[0] = width;
+    }
+
+    // The best place found by find()
+    int bestX, bestY, bestSegment;
+
+    /** Finds the lowest (then leftmost) place a w by h rectangle fits. */
+    boolean find (int w, int h, int pageWidth, int pageHeight)
+    {
+      int bestTop = Integer.MAX_VALUE;
+      for (int i = 0; i < segments; ++i)
+      {
+        int x = segX[i];
+        if (x + w > pageWidth) break;
+        int y = 0;
+        int remaining = w;
+        for (int j = i; remaining > 0; ++j)
+        {
+          y = Math.max(y, segY[j]);
+          remaining -= segW[j];
+        }
+        if (y + h > pageHeight) continue;
+        if (y + h < bestTop || (y + h == bestTop && x < bestX))
+        {
+          bestTop = y + h;
+          bestX = x;
+          bestY = y;
+          bestSegment = i;
+        }
+      }
+      return bestTop != Integer.MAX_VALUE;
+    }
+
+    /** Raises the skyline over the rectangle find() found. */
+    void place (int w, int h)
+    {
+      int i = bestSegment;
+      int top = bestY + h;
+      used = Math.max(used, top);
+
+      // Remove the segments the rectangle covers, keeping any leftover
+      // part of the last one.
+      int end = bestX + w;
+      int j = i;
+      while (j < segments && segX[j] + segW[j] <= end) ++j;
+      int removed = j - i;
+      if (j < segments && segX[j] < end)
+      {
+        segW[j] -= end - segX[j];
+        segX[j] = end;
+      }
+      // Replace them with one new segment
+      if (removed == 0)
+      {
+        grow();
+        System.arraycopy(segX, i, segX, i + 1, segments - i);
+        System.arraycopy(segY, i, segY, i + 1, segments - i);
+        System.arraycopy(segW, i, segW, i + 1, segments - i);
+        ++segments;
+      }
+      else if (removed > 1)
+      {
+        System.arraycopy(segX, j, segX, i + 1, segments - j);
+        System.arraycopy(segY, j, segY, i + 1, segments - j);
+        System.arraycopy(segW, j, segW, i + 1, segments - j);
+        segments -= removed - 1;
+      }
+      segX[i] = bestX;
+      segY[i] = top;
+      segW[i] = w;
+
+      // Merge with neighbors at the same height
+      if (i + 1 < segments && segY[i + 1] == top) merge(i);
+      if (i > 0 && segY[i - 1] == top) merge(i - 1);
+    }
+
+    private void merge (int i)
+    {
+      segW[i] += segW[i + 1];
+      System.arraycopy(segX, i + 2, segX, i + 1, segments - i - 2);
+      System.arraycopy(segY, i + 2, segY, i + 1, segments - i - 2);
+      System.arraycopy(segW, i + 2, segW, i + 1, segments - i - 2);
+      --segments;
+    }
+
+    private void grow ()
+    {
+      if (segments < segX.length) return;
+      int n = segX.length * 2;
+      segX = Arrays.copyOf(segX, n);
+      segY = Arrays.copyOf(segY, n);
+      segW = Arrays.copyOf(segW, n);
+    }
+  }
+
+  /** Packs the images added since the last pack() into new textures.
+    *
+    * Returns the stamps for all images packed so far, in the order they
+    * were added.
+    */
+  public GFStamp[] pack ()
+  {
+    int n = pending.size();
+    Rect[] rects = new Rect[n];
+    ArrayList<Rect> order = new ArrayList<>();
+    for (int i = 0; i < n; ++i)
+    {
+      GFPixels pix = pending.get(i);
+      Rect r = rects[i] = new Rect();
+      r.index = i;
+      r.w = pix.width + 2 * padding;
+      r.h = pix.height + 2 * padding;
+      if (r.w <= pageWidth && r.h <= pageHeight) order.add(r);
+    }
+
+    // Tallest first packs the skyline most tightly
+    order.sort((a, b) -> (a.h != b.h) ? (b.h - a.h) : (b.w - a.w));
+
+    ArrayList<Page> pages = new ArrayList<>();
+    for (Rect r : order)
+    {
+      // Try the pages in order, so early pages fill up
+      for (int p = 0; p <= pages.size(); ++p)
+      {
+        if (p == pages.size()) pages.add(new Page(pageWidth));
+        Page page = pages.get(p);
+        if (!page.find(r.w, r.h, pageWidth, pageHeight)) continue;
+        page.place(r.w, r.h);
+        r.x = page.bestX;
+        r.y = page.bestY;
+        r.page = p;
+        break;
+      }
+    }
+
+    // Copy the images into the pages and make textures of them
+    GFTexture[] pageTextures = new GFTexture[pages.size()];
+    for (int p = 0; p < pages.size(); ++p)
+    {
+      int h = trimPages ? pages.get(p).used : pageHeight;
+      GFPixels pix = new GFPixels(pageWidth, Math.max(h, 1));
+      for (Rect r : rects)
+        if (r.page == p) blit(pending.get(r.index), pix, r.x + padding, r.y + padding);
+      pageTextures[p] = new GFTexture(pix);
+      textures.add(pageTextures[p]);
+    }
+
+    for (Rect r : rects)
+    {
+      GFPixels pix = pending.get(r.index);
+      GFStamp s;
+      if (r.page == -1)
+      {
+        // Too big to share a page
+        GFTexture t = new GFTexture(pix);
+        textures.add(t);
+        s = new GFStamp(t);
+      }
+      else
+      {
+        s = pageTextures[r.page].subStamp(r.x + padding, r.y + padding, pix.width, pix.height);
+      }
+      stamps.add(s);
+      String name = pendingNames.get(r.index);
+      if (name != null) named.put(name, s);
+    }
+
+    pending.clear();
+    pendingNames.clear();
+    return stamps.toArray(new GFStamp[0]);
+  }
+
+  /** Copies an image into a page, extending its edges into the padding. */
+  private void blit (GFPixels src, GFPixels dst, int x, int y)
+  {
+    int w = src.width, h = src.height;
+    for (int row = -padding; row < h + padding; ++row)
+    {
+      int sy = Math.min(Math.max(row, 0), h - 1);
+      int d = (y + row) * dst.width + x;
+      if (y + row < 0 || y + row >= dst.height) continue;
+      System.arraycopy(src.pix, sy * w, dst.pix, d, w);
+      if (padding == 0) continue;
+      int left = src.pix[sy * w], right = src.pix[sy * w + w - 1];
+      for (int i = 1; i <= padding; ++i)
+      {
+        dst.pix[d - i] = left;
+        dst.pix[d + w - 1 + i] = right;
+      }
+    }
+  }
+}
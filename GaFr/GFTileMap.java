@@ -0,0 +1,281 @@
+package GaFr;
+import java.util.Arrays;
+
+/** A grid of tiles, for drawing big tile-based levels quickly.
+  *
+  * You give it the stamps to use for tiles (e.g., from
+  * GFTexture.splitIntoTiles()) and the size of the grid, and then set each
+  * cell to the index of the tile that goes there (or -1 for nothing).
+  * Each tile is drawn with its pin at the top left corner of its cell.
+  *
+  * Drawing stamps every tile of a big level each frame is slow, most of
+  * all since most of them are off screen anyway.  Instead, the map is
+  * divided into chunks of CHUNK_SIZE by CHUNK_SIZE cells, and draw() only
+  * draws the chunks which overlap the visible area (taking the camera
+  * into account; see GFCamera).  The drawing info for each chunk is worked
+  * out once and kept until one of its cells changes, so drawing a chunk
+  * is mostly just copying.  That means scrolling around a huge map costs
+  * about the same as drawing one screen of tiles.
+  *
+  * If you change a tile stamp (e.g., recolor it), call invalidate() so
+  * that the chunks get rebuilt.
+  */
+public class GFTileMap
+{
+  /** Width and height of a chunk in cells. */
+  public static final int CHUNK_SIZE = 16;
+
+  private static final int RECORD_SIZE = GFStampManager.RECORD_SIZE;
+
+  /** The stamps for each tile index. */
+  protected GFStamp[] tiles;
+
+  /** Size of the grid in cells. */
+  protected final int width, height;
+
+  /** Size of each cell in pixels. */
+  protected final float tileWidth, tileHeight;
+
+  /** Position of the top left corner of the map. */
+  protected float x, y;
+
+  /** The tile index of each cell (row by row). */
+  protected final int[] cells;
+
+  protected final int chunksX, chunksY;
+  protected final Chunk[] chunks;
+
+  /** The cached drawing info for one chunk.
+    *
+    * The records are grouped by texture, so each group can be copied
+    * into the stamp batch all at once.
+    */
+  protected static class Chunk
+  {
+    boolean dirty = true;
+    float[] records = new float[0];
+    GFTexture[] textures = new GFTexture[0];
+    int[] starts = new int[0]; // First record of each texture's group
+    int[] counts = new int[0];
+    int numGroups;
+  }
+
+  /** Creates an empty map.
+    *
+    * @param tiles The stamps to use for each tile index.
+    * @param width The width of the map in cells.
+    * @param height The height of the map in cells.
+    * @param tileWidth The width of a cell in pixels.
+    * @param tileHeight The height of a cell in pixels.
+    */
+  public GFTileMap (GFStamp[] tiles, int width, int height,
+                    float tileWidth, float tileHeight)
+  {
+    this.tiles = tiles;
+    this.width = width;
+    this.height = height;
+    this.tileWidth = tileWidth;
+    this.tileHeight = tileHeight;
+    cells = new int[width * height];
+    Arrays.fill(cells, -1);
+    chunksX = (width + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    chunksY = (height + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    chunks = new Chunk[chunksX * chunksY];
+  }
+
+  /** Creates an empty map with cells the size of the first tile. */
+  public GFTileMap (GFStamp[] tiles, int width, int height)
+  {
+    this(tiles, width, height, tiles[0].width, tiles[0].height);
+  }
+
+  public int getWidth () { return width; }
+  public int getHeight () { return height; }
+  public float getTileWidth () { return tileWidth; }
+  public float getTileHeight () { return tileHeight; }
+  public float getX () { return x; }
+  public float getY () { return y; }
+
+  /** Gets the tile index at a cell (-1 if empty or outside the map). */
+  public int get (int cx, int cy)
+  {
+    if (cx < 0 || cy < 0 || cx >= width || cy >= height) return -1;
+    return cells[cx + cy * width];
+  }
+
+  /** Sets the tile index at a cell (-1 for empty).
+    *
+    * Cells outside the map are ignored.
+    */
+  public GFTileMap set (int cx, int cy, int tile)
+  {
+    if (cx < 0 || cy < 0 || cx >= width || cy >= height) return this;
+    int i = cx + cy * width;
+    if (cells[i] == tile) return this;
+    cells[i] = tile;
+    Chunk c = chunks[cx / CHUNK_SIZE + (cy / CHUNK_SIZE) * chunksX];
+    if (c != null) c.dirty = true;
+    return this;
+  }
+
+  /** Sets every cell to the given tile index. */
+  public GFTileMap fill (int tile)
+  {
+    Arrays.fill(cells, tile);
+    return invalidate();
+  }
+
+  /** Moves the map so its top left corner is at the given position.
+    *
+    * This rebuilds every chunk, so if you want to scroll, move the camera
+    * instead.
+    */
+  public GFTileMap moveTo (float x, float y)
+  {
+    this.x = x;
+    this.y = y;
+    return invalidate();
+  }
+
+  /** Changes which stamps are used for the tiles. */
+  public GFTileMap setTiles (GFStamp[] tiles)
+  {
+    this.tiles = tiles;
+    return invalidate();
+  }
+
+  /** Marks all cached drawing info as out of date. */
+  public GFTileMap invalidate ()
+  {
+    for (Chunk c : chunks) if (c != null) c.dirty = true;
+    return this;
+  }
+
+  /** Gets the column of the cell at the given X position. */
+  public int cellX (float px)
+  {
+    return (int)Math.floor((px - x) / tileWidth);
+  }
+
+  /** Gets the row of the cell at the given Y position. */
+  public int cellY (float py)
+  {
+    return (int)Math.floor((py - y) / tileHeight);
+  }
+
+  /** Works out a chunk's records from its cells. */
+  protected void buildChunk (Chunk c, int chx, int chy)
+  {
+    int x0 = chx * CHUNK_SIZE, y0 = chy * CHUNK_SIZE;
+    int x1 = Math.min(x0 + CHUNK_SIZE, width);
+    int y1 = Math.min(y0 + CHUNK_SIZE, height);
+
+    // Group the tiles by texture.  Nearly always, there's just one.
+    c.numGroups = 0;
+    int total = 0;
+    for (int cy = y0; cy < y1; ++cy)
+    {
+      for (int cx = x0; cx < x1; ++cx)
+      {
+        int t = cells[cx + cy * width];
+        if (t < 0) continue;
+        int g = findGroup(c, tiles[t].texture);
+        ++c.counts[g];
+        ++total;
+      }
+    }
+
+    if (c.records.length < total * RECORD_SIZE)
+      c.records = new float[total * RECORD_SIZE];
+
+    int start = 0;
+    for (int g = 0; g < c.numGroups; ++g)
+    {
+      c.starts[g] = start;
+      start += c.counts[g];
+      c.counts[g] = 0;
+    }
+
+    float[] r = c.records;
+    for (int cy = y0; cy < y1; ++cy)
+    {
+      float py = y + cy * tileHeight;
+      for (int cx = x0; cx < x1; ++cx)
+      {
+        int t = cells[cx + cy * width];
+        if (t < 0) continue;
+        GFStamp s = tiles[t];
+        int g = findGroup(c, s.texture);
+        int off = (c.starts[g] + c.counts[g]++) * RECORD_SIZE;
+        GFStampManager.writeStamp(s, x + cx * tileWidth, py, r, off);
+        GFStampManager.setTint(r, off, s.color, 0);
+      }
+    }
+    c.dirty = false;
+  }
+
+  /** Finds (or adds) a chunk's group for a texture. */
+  private static int findGroup (Chunk c, GFTexture t)
+  {
+    for (int g = 0; g < c.numGroups; ++g)
+      if (c.textures[g] == t) return g;
+    int g = c.numGroups++;
+    if (g == c.textures.length)
+    {
+      c.textures = Arrays.copyOf(c.textures, g + 1);
+      c.starts = Arrays.copyOf(c.starts, g + 1);
+      c.counts = Arrays.copyOf(c.counts, g + 1);
+    }
+    c.textures[g] = t;
+    c.counts[g] = 0;
+    return g;
+  }
+
+  /** Draws the visible part of the map.
+    *
+    * This should be called from within GFGame.onDraw().
+    */
+  public void draw ()
+  {
+    draw(false, 0);
+  }
+
+  /** Draws the visible part of the map on a layer.
+    *
+    * @see GFStamp.stamp(int)
+    */
+  public void draw (int layer)
+  {
+    draw(true, layer);
+  }
+
+  private void draw (boolean layered, int layer)
+  {
+    GFStampManager m = GFBoot.game._stampManager;
+    float[] v = m.visible;
+    // Tiles can be bigger than their cells, so look one cell further up
+    // and to the left.
+    int cx0 = Math.max(0, Math.floorDiv(cellX(v[0]) - 1, CHUNK_SIZE));
+    int cy0 = Math.max(0, Math.floorDiv(cellY(v[1]) - 1, CHUNK_SIZE));
+    int cx1 = Math.min(chunksX - 1, Math.floorDiv(cellX(v[2]), CHUNK_SIZE));
+    int cy1 = Math.min(chunksY - 1, Math.floorDiv(cellY(v[3]), CHUNK_SIZE));
+
+    for (int chy = cy0; chy <= cy1; ++chy)
+    {
+      for (int chx = cx0; chx <= cx1; ++chx)
+      {
+        int i = chx + chy * chunksX;
+        Chunk c = chunks[i];
+        if (c == null) c = chunks[i] = new Chunk();
+        if (c.dirty) buildChunk(c, chx, chy);
+        for (int g = 0; g < c.numGroups; ++g)
+        {
+          if (layered)
+            m.stampRecords(c.textures[g], c.records, c.starts[g], c.counts[g], layer);
+          else
+            m.stampRecords(c.textures[g], c.records, c.starts[g], c.counts[g]);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,259 @@
+package GaFr;
+
+/** Internal use.
+  *
+  * The normal backend, which runs in the browser.  Everything is passed on
+  * to the natives in GFNative.
+  */
+public class GFWebBackend implements GFBackend
+{
+  public void initEarly ()
+  {
+    GFNative.initEarly();
+  }
+
+  public void begin (Object o, int width, int height)
+  {
+    GFNative.begin(o, width, height);
+  }
+
+  public void consoleLogObj (Object o)
+  {
+    GFNative.consoleLogObj(o);
+  }
+
+  public void debugSet (Object o)
+  {
+    GFNative.debugSet(o);
+  }
+
+  public void setCanvasSize (int w, int h)
+  {
+    GFNative.setCanvasSize(w, h);
+  }
+
+  public void getCanvasWidth ()
+  {
+    GFNative.getCanvasWidth();
+  }
+
+  public void getCanvasHeight ()
+  {
+    GFNative.getCanvasHeight();
+  }
+
+  public void gl_createTexture (GFTexture t)
+  {
+    GFNative.gl_createTexture(t);
+  }
+
+  public void gl_deleteTexture (GFTexture t)
+  {
+    GFNative.gl_deleteTexture(t);
+  }
+
+  public void gl_texParameteri (int a, int b, int c)
+  {
+    GFNative.gl_texParameteri(a, b, c);
+  }
+
+  public void gl_activeTexture (int i)
+  {
+    GFNative.gl_activeTexture(i);
+  }
+
+  public void gl_bindTexture (int i, GFTexture t)
+  {
+    GFNative.gl_bindTexture(i, t);
+  }
+
+  public void gl_texImage2D (int level, int internalFormat, int w, int h, int srcFormat, int pix[], int offset)
+  {
+    GFNative.gl_texImage2D(level, internalFormat, w, h, srcFormat, pix, offset);
+  }
+
+  public void gl_texSubImage2D (int level, int x, int y, int w, int h, int srcFormat, int[] pix, int offset, int rowLength)
+  {
+    GFNative.gl_texSubImage2D(level, x, y, w, h, srcFormat, pix, offset, rowLength);
+  }
+
+  public void gl_generateMipmap (int i)
+  {
+    GFNative.gl_generateMipmap(i);
+  }
+
+  public int gl_getUniformLocation (Gl.Program p, String name)
+  {
+    return GFNative.gl_getUniformLocation(p, name);
+  }
+
+  public int gl_getAttributeLocation (Gl.Program p, String name)
+  {
+    return GFNative.gl_getAttributeLocation(p, name);
+  }
+
+  public int gl_getParameter (int pname)
+  {
+    return GFNative.gl_getParameter(pname);
+  }
+
+  public void gl_uniform2f (int loc, float f1, float f2)
+  {
+    GFNative.gl_uniform2f(loc, f1, f2);
+  }
+
+  public void gl_uniform1i (int loc, int i)
+  {
+    GFNative.gl_uniform1i(loc, i);
+  }
+
+  public void gl_uniform1f (int loc, float f)
+  {
+    GFNative.gl_uniform1f(loc, f);
+  }
+
+  public void gl_uniform3f (int loc, float f1, float f2, float f3)
+  {
+    GFNative.gl_uniform3f(loc, f1, f2, f3);
+  }
+
+  public void gl_uniform4f (int loc, float f1, float f2, float f3, float f4)
+  {
+    GFNative.gl_uniform4f(loc, f1, f2, f3, f4);
+  }
+
+  public void gl_uniformfv (int loc, int components, float[] data, int offset, int count)
+  {
+    GFNative.gl_uniformfv(loc, components, data, offset, count);
+  }
+
+  public void gl_uniform1iv (int loc, int[] data, int offset, int count)
+  {
+    GFNative.gl_uniform1iv(loc, data, offset, count);
+  }
+
+  public void gl_uniformMatrix3fv (int loc, float[] data, int offset)
+  {
+    GFNative.gl_uniformMatrix3fv(loc, data, offset);
+  }
+
+  public void gl_useProgram (Gl.Program p)
+  {
+    GFNative.gl_useProgram(p);
+  }
+
+  public void gl_createProgramFromSources (Gl.Program p, String vs, String fs)
+  {
+    GFNative.gl_createProgramFromSources(p, vs, fs);
+  }
+
+  public void gl_clearColor (float r, float g, float b, float a)
+  {
+    GFNative.gl_clearColor(r, g, b, a);
+  }
+
+  public void gl_clear (int f)
+  {
+    GFNative.gl_clear(f);
+  }
+
+  public void gl_viewport (int x, int y, int w, int height)
+  {
+    GFNative.gl_viewport(x, y, w, height);
+  }
+
+  public void gl_viewportDefault ()
+  {
+    GFNative.gl_viewportDefault();
+  }
+
+  public void stampSetup (int maxStamps, int maxTextures, float[] data)
+  {
+    GFNative.stampSetup(maxStamps, maxTextures, data);
+  }
+
+  public void stampDraw (int numStamps, int numTextures)
+  {
+    GFNative.stampDraw(numStamps, numTextures);
+  }
+
+  public void stampSetView (float a, float b, float tx, float c, float d, float ty)
+  {
+    GFNative.stampSetView(a, b, tx, c, d, ty);
+  }
+
+  public void staticBatchUpload (GFStaticBatch b, int part, float[] data, int numStamps)
+  {
+    GFNative.staticBatchUpload(b, part, data, numStamps);
+  }
+
+  public void staticBatchDraw (GFStaticBatch b, int part, int numStamps, int numTextures, float dx, float dy)
+  {
+    GFNative.staticBatchDraw(b, part, numStamps, numTextures, dx, dy);
+  }
+
+  public void staticBatchDelete (GFStaticBatch b)
+  {
+    GFNative.staticBatchDelete(b);
+  }
+
+  public void renderTargetCreate (GFTexture t, int w, int h)
+  {
+    GFNative.renderTargetCreate(t, w, h);
+  }
+
+  public void renderTargetBind (GFTexture t)
+  {
+    GFNative.renderTargetBind(t);
+  }
+
+  public void renderTargetClear (float r, float g, float b, float a)
+  {
+    GFNative.renderTargetClear(r, g, b, a);
+  }
+
+  public void renderTargetDelete (GFTexture t)
+  {
+    GFNative.renderTargetDelete(t);
+  }
+
+  public void loadSound (GaFr.GFSound sound, byte[] data, String mime)
+  {
+    GFNative.loadSound(sound, data, mime);
+  }
+
+  public void playSound (GaFr.GFSound sound)
+  {
+    GFNative.playSound(sound);
+  }
+
+  public void setVolume (GaFr.GFSound sound, float volume)
+  {
+    GFNative.setVolume(sound, volume);
+  }
+
+  public void pauseSound (GaFr.GFSound sound)
+  {
+    GFNative.pauseSound(sound);
+  }
+
+  public void stopSound (GaFr.GFSound sound)
+  {
+    GFNative.stopSound(sound);
+  }
+
+  public boolean getGamepadData (int index, float[] axes, boolean[] buttons, int[] counts)
+  {
+    return GFNative.getGamepadData(index, axes, buttons, counts);
+  }
+
+  public void setTitle (String s)
+  {
+    GFNative.setTitle(s);
+  }
+
+  public void setCursorStyle (String s)
+  {
+    GFNative.setCursorStyle(s);
+  }
+}
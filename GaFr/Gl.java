@@ -1,4 +1,7 @@
 package GaFr;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 /** Low-level graphics (WebGL) stuff.
   *
@@ -586,22 +589,174 @@ public class Gl
     protected String vsSrc;
     protected String fsSrc;
 
+    // Uniforms are referred to by handles, which are indexes into these.
+    // Each handle's location is looked up when the handle is made and
+    // again right after each compile (it's a string lookup on the other
+    // side of the native bridge), and the last value sent for it is kept
+    // so that setting the same value again costs nothing.  Handles stay
+    // the same across recompiles.
+    private HashMap<String, Integer> handles = new HashMap<>();
+    private int[] locations = new int[8];
+    private float[][] values = new float[8][];
+    private int numHandles = 0;
+    private float[] scratch = new float[4];
+
     protected void compile ()
     {
       GFN.gl_createProgramFromSources(this, vsSrc, fsSrc);
+      // Any locations we had belonged to the old program, so look them all
+      // up again; the new program starts with none of our values set.
+      for (Map.Entry<String, Integer> e : handles.entrySet())
+      {
+        int h = e.getValue();
+        locations[h] = GFN.gl_getUniformLocation(this, e.getKey());
+        values[h] = null;
+      }
+      GFGlState.invalidateProgram();
+    }
+
+    /** Gets a handle for a uniform.
+      *
+      * Setting uniforms by handle is faster than by name.  If the program
+      * has no such uniform, setting it does nothing (as in WebGL).
+      */
+    public int getUniform (String name)
+    {
+      Integer h = handles.get(name);
+      if (h != null) return h;
+      if (numHandles == locations.length)
+      {
+        locations = Arrays.copyOf(locations, numHandles * 2);
+        values = Arrays.copyOf(values, numHandles * 2);
+      }
+      int handle = numHandles++;
+      locations[handle] = GFN.gl_getUniformLocation(this, name);
+      values[handle] = null;
+      handles.put(name, handle);
+      return handle;
+    }
+
+    /** Forgets the values of all uniforms, so the next sets are all sent.
+      *
+      * You only need this if something changes them behind our back.
+      */
+    public void invalidateUniforms ()
+    {
+      for (int i = 0; i < numHandles; ++i) values[i] = null;
+    }
+
+    /** Checks a uniform's value against what was last sent.
+      *
+      * Returns true if it's the same (or the uniform doesn't exist), in
+      * which case there's nothing to do.  Otherwise, it records the new
+      * value and makes this the current program, ready for it to be sent.
+      * Values are compared as bits, so ints can be stored too.
+      */
+    private boolean unchanged (int handle, float[] v, int off, int n)
+    {
+      if (locations[handle] < 0) return true;
+      float[] old = values[handle];
+      if (old != null && old.length == n)
+      {
+        int i = 0;
+        while (i < n && Float.floatToRawIntBits(old[i])
+                        == Float.floatToRawIntBits(v[off + i])) ++i;
+        if (i == n)
+        {
+          GFGlState.countSaved();
+          return true;
+        }
+      }
+      else
+      {
+        old = values[handle] = new float[n];
+      }
+      System.arraycopy(v, off, old, 0, n);
+      GFGlState.useProgram(this);
+      return false;
     }
 
+    private boolean unchanged (int handle, float f1, float f2, float f3, float f4, int n)
+    {
+      float[] v = scratch;
+      v[0] = f1; v[1] = f2; v[2] = f3; v[3] = f4;
+      return unchanged(handle, v, 0, n);
+    }
+
+    public void setUniform (int handle, float f)
+    {
+      if (unchanged(handle, f, 0, 0, 0, 1)) return;
+      GFN.gl_uniform1f(locations[handle], f);
+    }
+    public void setUniform (int handle, float f1, float f2)
+    {
+      if (unchanged(handle, f1, f2, 0, 0, 2)) return;
+      GFN.gl_uniform2f(locations[handle], f1, f2);
+    }
+    public void setUniform (int handle, float f1, float f2, float f3)
+    {
+      if (unchanged(handle, f1, f2, f3, 0, 3)) return;
+      GFN.gl_uniform3f(locations[handle], f1, f2, f3);
+    }
+    public void setUniform (int handle, float f1, float f2, float f3, float f4)
+    {
+      if (unchanged(handle, f1, f2, f3, f4, 4)) return;
+      GFN.gl_uniform4f(locations[handle], f1, f2, f3, f4);
+    }
+    public void setUniform (int handle, int i)
+    {
+      if (unchanged(handle, Float.intBitsToFloat(i), 0, 0, 0, 1)) return;
+      GFN.gl_uniform1i(locations[handle], i);
+    }
+
+    /** Sets a mat3 uniform from 9 floats (in column-major order). */
+    public void setUniformMatrix3 (int handle, float[] m, int offset)
+    {
+      if (unchanged(handle, m, offset, 9)) return;
+      GFN.gl_uniformMatrix3fv(locations[handle], m, offset);
+    }
+
+    /** Sets an array uniform.
+      *
+      * The uniform is an array of count elements, each of which is
+      * components floats (i.e., 1 for float[], 2 for vec2[], etc.).
+      */
+    public void setUniformArray (int handle, int components, float[] data,
+                                 int offset, int count)
+    {
+      if (unchanged(handle, data, offset, components * count)) return;
+      GFN.gl_uniformfv(locations[handle], components, data, offset, count);
+    }
+
+    /** Sets an int[] uniform. */
+    public void setUniformArray (int handle, int[] data, int offset, int count)
+    {
+      if (scratch.length < count) scratch = new float[count];
+      float[] v = scratch;
+      for (int i = 0; i < count; ++i) v[i] = Float.intBitsToFloat(data[offset + i]);
+      if (unchanged(handle, v, 0, count)) return;
+      GFN.gl_uniform1iv(locations[handle], data, offset, count);
+    }
+
+    public void setUniform (String uniform, float f)
+    {
+      setUniform(getUniform(uniform), f);
+    }
     public void setUniform (String uniform, float f1, float f2)
     {
-      //TODO: cache locations
-      int loc = GFN.gl_getUniformLocation(this, uniform);
-      GFN.gl_uniform2f(loc, f1, f2);
+      setUniform(getUniform(uniform), f1, f2);
+    }
+    public void setUniform (String uniform, float f1, float f2, float f3)
+    {
+      setUniform(getUniform(uniform), f1, f2, f3);
+    }
+    public void setUniform (String uniform, float f1, float f2, float f3, float f4)
+    {
+      setUniform(getUniform(uniform), f1, f2, f3, f4);
     }
     public void setUniform (String uniform, int i)
     {
-      //TODO: cache locations
-      int loc = GFN.gl_getUniformLocation(this, uniform);
-      GFN.gl_uniform1i(loc, i);
+      setUniform(getUniform(uniform), i);
     }
   }
 }
@@ -0,0 +1,49 @@
+package GaFr;
+
+/** Sets GaFr up to run without a browser, for the benchmarks.
+  *
+  * Everything goes to a GFHeadlessBackend with logging turned off, so the
+  * benchmarks measure GaFr's own work and not the command log's.
+  */
+class BenchmarkSupport
+{
+  private static GFHeadlessBackend backend;
+
+  /** Installs the headless backend and a game, if that hasn't been done. */
+  static GFHeadlessBackend setUp ()
+  {
+    return setUp(null);
+  }
+
+  /** Installs a backend (or a GFHeadlessBackend if b is null) and a game.
+    *
+    * Only the first call in a JVM installs anything; JMH runs each
+    * benchmark in its own fork, so that's one per benchmark.
+    */
+  static synchronized GFHeadlessBackend setUp (GFHeadlessBackend b)
+  {
+    if (backend == null)
+    {
+      backend = (b != null) ? b : new GFHeadlessBackend();
+      backend.setLogLimit(0);
+      backend.printLogs = false;
+      GFN.setBackend(backend);
+      GFBoot.basePath = "./";
+    }
+    if (GFBoot.game == null) GFBoot.game = new GFGame();
+    return backend;
+  }
+
+  /** Makes an image filled with a repeatable pattern of colors. */
+  static GFPixels pattern (int w, int h, int seed)
+  {
+    GFPixels p = new GFPixels(w, h);
+    int x = seed | 1;
+    for (int i = 0; i < p.pix.length; ++i)
+    {
+      x ^= x << 13; x ^= x >>> 17; x ^= x << 5;
+      p.pix[i] = x | 0xff000000;
+    }
+    return p;
+  }
+}
@@ -0,0 +1,53 @@
+package GaFr;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Drawing and measuring text. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FontBenchmark
+{
+  private static final String CHARS =
+    " !\"#$%&'()*+,-./0123456789:;<=>?@ABCDEFGHIJKLMNOPQRSTUVWXYZ[\\]^_`abcdefghijklmnopqrstuvwxyz{|}~";
+
+  GFStampManager manager;
+  GFFont font;
+  String text;
+
+  @Setup
+  public void setUp ()
+  {
+    BenchmarkSupport.setUp();
+    manager = GFBoot.game._stampManager;
+    // A fixed-width font like the ones made by psf_to_ffont
+    GFTexture t = new GFTexture(BenchmarkSupport.pattern(8 * CHARS.length(), 16, 1));
+    font = new GFFont(t.splitIntoTilesBySize(8, 16), CHARS);
+    StringBuilder sb = new StringBuilder();
+    for (int line = 0; line < 30; ++line)
+    {
+      for (int i = 0; i < 80; ++i)
+        sb.append(CHARS.charAt((line * 7 + i * 13) % CHARS.length()));
+      sb.append('\n');
+    }
+    text = sb.toString();
+  }
+
+  /// A screenful of text (30 lines of 80 characters)
+  @Benchmark
+  public boolean draw ()
+  {
+    manager.beginFrame(800, 500);
+    font.draw(0, 0, text);
+    return manager.endFrame();
+  }
+
+  @Benchmark
+  public GFPairI measure ()
+  {
+    return font.measure(text);
+  }
+}
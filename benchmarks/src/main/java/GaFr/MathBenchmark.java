@@ -0,0 +1,68 @@
+package GaFr;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** The easing functions and GFM's float math wrappers. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MathBenchmark
+{
+  private static final int N = 4096;
+
+  /// Which easing to use; kept separate so the other benchmarks run once
+  @State(Scope.Thread)
+  public static class EasingState
+  {
+    @Param({"easeLinear", "easeInOutSine", "easeInOutCubic", "easeOutElastic", "easeOutBounce"})
+    String easing;
+
+    Easings.Easing ease;
+
+    @Setup
+    public void setUp () throws Exception
+    {
+      ease = (Easings.Easing)Easings.class.getField(easing).get(null);
+    }
+  }
+
+  float[] inputs = new float[N];
+
+  @Setup
+  public void setUp ()
+  {
+    for (int i = 0; i < N; ++i) inputs[i] = i / (float)(N - 1);
+  }
+
+  @Benchmark
+  public float easef (EasingState s)
+  {
+    Easings.Easing ease = s.ease;
+    float sum = 0;
+    for (int i = 0; i < N; ++i) sum += ease.easef(inputs[i]);
+    return sum;
+  }
+
+  @Benchmark
+  public float sinCos ()
+  {
+    float sum = 0;
+    for (int i = 0; i < N; ++i)
+    {
+      float a = inputs[i] * 2 * GFM.PIf;
+      sum += GFM.sinf(a) * GFM.cosf(a);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public float atan2 ()
+  {
+    float sum = 0;
+    for (int i = 0; i < N; ++i) sum += GFM.atan2f(inputs[i] - 0.5f, 0.5f - inputs[N - 1 - i]);
+    return sum;
+  }
+}
@@ -0,0 +1,67 @@
+package GaFr;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Parsing JSON and texture atlas data, as is done when loading. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark
+{
+  String json;
+  String atlas;
+
+  @Setup
+  public void setUp ()
+  {
+    BenchmarkSupport.setUp();
+
+    // Something like a level file: lots of small objects
+    StringBuilder sb = new StringBuilder("{\"name\": \"level 1\", \"objects\": [\n");
+    for (int i = 0; i < 2000; ++i)
+    {
+      if (i != 0) sb.append(",\n");
+      sb.append("  {\"id\": ").append(i)
+        .append(", \"type\": \"thing").append(i % 17).append('"')
+        .append(", \"x\": ").append(i * 1.5).append(", \"y\": ").append(-i * 0.25)
+        .append(", \"solid\": ").append(i % 3 == 0)
+        .append(", \"tags\": [\"a\", \"b\\u00e9\", null]}");
+    }
+    json = sb.append("\n]}\n").toString();
+
+    // A Spine atlas with a few pages of indexed animation frames
+    sb = new StringBuilder();
+    for (int page = 0; page < 4; ++page)
+    {
+      if (page != 0) sb.append("\n\n");
+      sb.append("sheet").append(page).append(".png\n");
+      sb.append("size: 1024,1024\nfilter: Linear,Linear\n");
+      for (int i = 0; i < 256; ++i)
+      {
+        sb.append("anim").append(page).append('_').append(i / 8).append('\n');
+        sb.append("  bounds: ").append((i % 16) * 64).append(',').append((i / 16) * 64)
+          .append(",64,64\n");
+        sb.append("  offsets: 2,2,68,68\n");
+        sb.append("  index: ").append(i % 8).append('\n');
+      }
+    }
+    atlas = sb.toString();
+  }
+
+  @Benchmark
+  public GFJSON.Value parseJSON ()
+  {
+    return GFJSON.parse(json);
+  }
+
+  @Benchmark
+  public TextureAtlas loadAtlasData ()
+  {
+    TextureAtlas a = new TextureAtlas();
+    a.loadAtlasData(atlas);
+    return a;
+  }
+}
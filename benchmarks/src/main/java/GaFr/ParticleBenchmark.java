@@ -0,0 +1,41 @@
+package GaFr;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Updating and drawing a full particle system. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParticleBenchmark
+{
+  @Param({"50000"})
+  int count;
+
+  GFStampManager manager;
+  GFParticleSystem particles;
+
+  @Setup
+  public void setUp ()
+  {
+    BenchmarkSupport.setUp();
+    manager = GFBoot.game._stampManager;
+    GFStamp s = new GFStamp(new GFTexture(BenchmarkSupport.pattern(8, 8, 1))).centerPin();
+    particles = new GFParticleSystem(s, count);
+    particles.setSeed(1);
+    // Long lives, so the system stays full
+    particles.lifeMin = particles.lifeMax = 1000000;
+    particles.emit(count, 400, 250);
+  }
+
+  @Benchmark
+  public boolean frame ()
+  {
+    manager.beginFrame(800, 500);
+    particles.update();
+    particles.draw();
+    return manager.endFrame();
+  }
+}
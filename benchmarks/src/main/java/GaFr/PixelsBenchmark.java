@@ -0,0 +1,81 @@
+package GaFr;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** GFPixels' image transforms.
+  *
+  * The whole-image operations run in parallel bands above
+  * GFPixels.parallelThreshold; "serial" turns that off for comparison.
+  */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PixelsBenchmark
+{
+  @Param({"256", "1024", "4096"})
+  int size;
+
+  @Param({"parallel", "serial"})
+  String mode;
+
+  private static final int COLOR_A = 0xffff0000, COLOR_B = 0xff00ff00;
+
+  GFPixels pixels;
+  GFPixels source;
+  boolean swap;
+
+  @Setup
+  public void setUp ()
+  {
+    BenchmarkSupport.setUp();
+    // Each trial is in its own fork, so this doesn't leak into the others
+    if (mode.equals("serial")) GFPixels.parallelThreshold = Integer.MAX_VALUE;
+    pixels = BenchmarkSupport.pattern(size, size, 1);
+    source = BenchmarkSupport.pattern(size, size, 2);
+    // Give replaceColor() something to find: a quarter of the pixels
+    for (int i = 0; i < pixels.pix.length; i += 4) pixels.pix[i] = COLOR_A;
+  }
+
+  /// Alternates directions so there's always something to replace
+  @Benchmark
+  public GFPixels replaceColor ()
+  {
+    swap = !swap;
+    return swap ? pixels.replaceColor(COLOR_A, COLOR_B)
+                : pixels.replaceColor(COLOR_B, COLOR_A);
+  }
+
+  @Benchmark
+  public GFPixels setSaturation ()
+  {
+    return pixels.setSaturation(0.9);
+  }
+
+  @Benchmark
+  public GFPixels toGrayscale ()
+  {
+    return pixels.toGrayscale();
+  }
+
+  @Benchmark
+  public GFPixels replaceAlpha ()
+  {
+    return pixels.replaceAlpha(0xc0);
+  }
+
+  @Benchmark
+  public GFPixels fill ()
+  {
+    return pixels.fill(COLOR_B);
+  }
+
+  /// Pastes all but a border of the source, so clipping is exercised
+  @Benchmark
+  public GFPixels pasteFrom ()
+  {
+    return pixels.pasteFrom(source, 4, 4, size, size, -8, 8);
+  }
+}
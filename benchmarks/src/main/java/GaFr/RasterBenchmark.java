@@ -0,0 +1,49 @@
+package GaFr;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Drawing a frame with the software rasterizer (GFSoftwareBackend). */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RasterBenchmark
+{
+  /// Stamps per frame; each is 32x32, so 2000 covers the canvas about 5 times
+  @Param({"2000"})
+  int count;
+
+  /// Worker threads (0 for the common pool)
+  @Param({"1", "0"})
+  int threads;
+
+  GFStampManager manager;
+  GFStamp stamp;
+
+  @Setup
+  public void setUp ()
+  {
+    ForkJoinPool pool = (threads == 0) ? ForkJoinPool.commonPool() : new ForkJoinPool(threads);
+    BenchmarkSupport.setUp(new GFSoftwareBackend(pool));
+    GFN.begin(GFBoot.game, 800, 500);
+    manager = GFBoot.game._stampManager;
+    GFPixels p = BenchmarkSupport.pattern(32, 32, 1);
+    for (int i = 0; i < p.pix.length; i += 3) p.pix[i] &= 0x7fffffff; // Some translucency
+    stamp = new GFStamp(new GFTexture(p)).centerPin();
+  }
+
+  @Benchmark
+  public boolean frame ()
+  {
+    manager.beginFrame(800, 500);
+    for (int i = 0; i < count; ++i)
+    {
+      stamp.rotate(i * 0.1f);
+      manager.stamp(stamp, (i * 37) % 800, (i * 91) % 500);
+    }
+    return manager.endFrame();
+  }
+}
@@ -0,0 +1,59 @@
+package GaFr;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Stamping a frame's worth of stamps and flushing them. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StampBenchmark
+{
+  @Param({"10000"})
+  int count;
+
+  /// More than GFStampManager.MAX_TEXTURES forces flushes
+  @Param({"1", "8"})
+  int textures;
+
+  @Param({"false", "true"})
+  boolean deferred;
+
+  GFStampManager manager;
+  GFStamp[] stamps;
+
+  @Setup
+  public void setUp ()
+  {
+    BenchmarkSupport.setUp();
+    manager = new GFStampManager();
+    manager.setDeferred(deferred);
+    stamps = new GFStamp[textures];
+    for (int i = 0; i < textures; ++i)
+      stamps[i] = new GFStamp(new GFTexture(BenchmarkSupport.pattern(16, 16, i))).centerPin();
+  }
+
+  @Benchmark
+  public boolean frame ()
+  {
+    manager.beginFrame(800, 500);
+    for (int i = 0; i < count; ++i)
+      manager.stamp(stamps[i % textures], i % 800, i % 500);
+    return manager.endFrame();
+  }
+
+  @Benchmark
+  public boolean frameRotated ()
+  {
+    manager.beginFrame(800, 500);
+    for (int i = 0; i < count; ++i)
+    {
+      GFStamp s = stamps[i % textures];
+      s.rotate(i * 0.01f);
+      manager.stamp(s, i % 800, i % 500);
+    }
+    return manager.endFrame();
+  }
+}
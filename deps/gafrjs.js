@@ -219,24 +219,31 @@ in vec2 a_size;
 in vec2 a_pos;
 in vec2 a_rotation;
 
-// Per-quad data to pass to fragment shader
-in uint a_tex;
+// Per-quad tint and texture unit, packed into two floats (which can hold
+// 16 bit integers exactly).  x is the high 16 bits of the tint with the
+// texture unit above that; y is the low 16 bits of the tint.
+in vec2 a_tint;
 
 uniform vec2 u_canvsize;
+uniform vec2 u_offset;
+
+// The camera's world-to-canvas transform, as the two rows of a 2x3 matrix
+uniform vec3 u_view_x;
+uniform vec3 u_view_y;
 
 // Stuff to the fragment shader
 out vec2 v_tc;
 flat out uint a_tunit;
 flat out uint a_frag_tint;
-in uint a_tint;
 
 void main ()
 {
   vec2 p = a_coord * a_size;
   p = vec2( a_pin.x + (p.x-a_pin.x) * a_rotation.y + (p.y-a_pin.y) * a_rotation.x,
             a_pin.y + (p.y-a_pin.y) * a_rotation.y - (p.x-a_pin.x) * a_rotation.x );
-  p += a_pos;
+  p += a_pos + u_offset;
   p -= a_pin;
+  p = vec2(dot(u_view_x, vec3(p, 1)), dot(u_view_y, vec3(p, 1)));
   p = (2.0 * (p / u_canvsize)) - 1.0;
 
   gl_Position = vec4(p * vec2(1, -1), 0, 1);
@@ -259,8 +266,9 @@ void main ()
       break;
   }
 
-  a_tunit = a_tex; // Pass forward
-  a_frag_tint = a_tint;
+  uint tint_hi = uint(a_tint.x);
+  a_tunit = tint_hi >> 16; // Pass forward
+  a_frag_tint = ((tint_hi & uint(0xffff)) << 16) | uint(a_tint.y);
 }
 `;
 
@@ -276,6 +284,9 @@ uniform sampler2D u_sampler4;
 uniform sampler2D u_sampler5;
 flat in uint a_tunit;
 
+// Whether we're drawing into a render texture (see gafr_renderTargetBind)
+uniform bool u_to_texture;
+
 // Passed in from the vertex shader
 in vec2 v_tc;
 
@@ -295,6 +306,10 @@ void main ()
   else if (a_tunit == 3u) fragColor = texture(u_sampler3, v_tc).bgra * a_frag_tint2;
   else if (a_tunit == 4u) fragColor = texture(u_sampler4, v_tc).bgra * a_frag_tint2;
   else if (a_tunit == 5u) fragColor = texture(u_sampler5, v_tc).bgra * a_frag_tint2;
+
+  // Textures hold their channels in the order the pixels come from Java
+  // (hence the .bgra above), so render textures need to as well.
+  if (u_to_texture) fragColor = fragColor.bgra;
 }
 `;
 
@@ -314,11 +329,13 @@ void main ()
   const a_rotation = gl.getAttribLocation(program, "a_rotation");
 
   // Per-quad
-  const a_tex = gl.getAttribLocation(program, "a_tex");
   const a_tint = gl.getAttribLocation(program, "a_tint");
 
   // Vertex shader uniforms
   const u_canvsize = gl.getUniformLocation(program, "u_canvsize");
+  const u_offset = gl.getUniformLocation(program, "u_offset");
+  const u_view_x = gl.getUniformLocation(program, "u_view_x");
+  const u_view_y = gl.getUniformLocation(program, "u_view_y");
 
   // Uniforms used by fragment shader
   const u_sampler0 = gl.getUniformLocation(program, "u_sampler0");
@@ -327,22 +344,27 @@ void main ()
   const u_sampler3 = gl.getUniformLocation(program, "u_sampler3");
   const u_sampler4 = gl.getUniformLocation(program, "u_sampler4");
   const u_sampler5 = gl.getUniformLocation(program, "u_sampler5");
+  const u_to_texture = gl.getUniformLocation(program, "u_to_texture");
 
-  // These hold the data used by the shaders.
-  // They should be typed arrays coming from CheerpJ, so the first element
+  // This holds the data used by the shaders.
+  // It should be a typed array coming from CheerpJ, so the first element
   // should be ignored (CheerpJ uses it for type identification).
   const ARRAY_OFF = 1;
-  var vinfo = null; // quad info data
-  var tcs = null; // texture coordinate data
-  var tex = null; // which texture unit to use
-  var stampTint = null;
+  var stampData = null;
+
+  // Each stamp's data is interleaved into one record of this many floats.
+  // This must match GFStampManager.RECORD_SIZE.
+  const RECORD_SIZE = 14;
+
+  // The render texture being drawn into, or null for the canvas
+  let target = null;
 
-  const vao = gl.createVertexArray();
-  gl.bindVertexArray(vao);
+  // The current camera transform (see gafr_stampSetView)
+  const view = [1,0,0, 0,1,0];
 
   // Set up a VBO with the coordinates.
   // It's the same coordinates for every single one; we use the vertex
-  // attributes to move it around.
+  // attributes to move it around.  It's shared by all the VAOs below.
   const coord_vbo = gl.createBuffer();
   gl.bindBuffer(gl.ARRAY_BUFFER, coord_vbo);
   gl.bufferData(gl.ARRAY_BUFFER, new Float32Array([
@@ -351,103 +373,71 @@ void main ()
       0.0,  1.0,
       1.0,  1.0,
   ]), gl.STATIC_DRAW);
-  // Set up how the attributes are stored/fetched in/from the VBO
-  // two components, which are floats, don't normalize, tightly packed, starting at beginning
-  gl.enableVertexAttribArray(a_coord);
-  gl.vertexAttribPointer(a_coord, 2, gl.FLOAT, false, 0, 0);
-
-  const usage = gl.STATIC_DRAW;
-
-  const quad_vbo = gl.createBuffer();
-  gl.bindBuffer(gl.ARRAY_BUFFER, quad_vbo);
-  // stamp info is 8 float32s:
-  // pinx,piny
-  // sizex,sizey
-  // posx,posy
-  // sin,cos
-  gl.enableVertexAttribArray(a_pin);
-  gl.enableVertexAttribArray(a_size);
-  gl.enableVertexAttribArray(a_pos);
-  gl.enableVertexAttribArray(a_rotation);
-  gl.vertexAttribDivisor(a_pin, 1);
-  gl.vertexAttribDivisor(a_size, 1);
-  gl.vertexAttribDivisor(a_pos, 1);
-  gl.vertexAttribDivisor(a_rotation, 1);
-  gl.vertexAttribPointer(a_pin,      2, gl.FLOAT, false, 4*8, 4*(0));
-  gl.vertexAttribPointer(a_size,     2, gl.FLOAT, false, 4*8, 4*(2));
-  gl.vertexAttribPointer(a_pos,      2, gl.FLOAT, false, 4*8, 4*(2+2));
-  gl.vertexAttribPointer(a_rotation, 2, gl.FLOAT, false, 4*8, 4*(2+2+2));
-
-  // Set up a VBO for the TCs.
-  // There's one set of TCs per quad; the way this works right now is
-  // that we pass four attributes (one for each quad corner).  In the
-  // shader, these get put into an array and we pick the right one
-  // out using the vertex number.  It seems like there should be a
-  // cleaner way (e.g., ideally, we'd pass them in as an array).
-  // If we're going to keep doing them like this, we might as well
-  // merge them into quad_vbo.
-  // Each entry is 8 float32s.
-  const tc_vbo = gl.createBuffer();
-  gl.bindBuffer(gl.ARRAY_BUFFER, tc_vbo);
-  gl.enableVertexAttribArray(a_tc1);
-  gl.enableVertexAttribArray(a_tc2);
-//  gl.enableVertexAttribArray(a_tc3);
-//  gl.enableVertexAttribArray(a_tc4);
-  gl.vertexAttribDivisor(a_tc1, 1);
-  gl.vertexAttribDivisor(a_tc2, 1);
-//  gl.vertexAttribDivisor(a_tc3, 1);
-//  gl.vertexAttribDivisor(a_tc4, 1);
-  //NOTE: the stride used to be 4*8, but I'm removing tc3 and tc4 for now...
-  gl.vertexAttribPointer(a_tc1, 2, gl.FLOAT, false, 4*4/*note!*/, 4*(0));
-  gl.vertexAttribPointer(a_tc2, 2, gl.FLOAT, false, 4*4/*note!*/, 4*(2));
-//  gl.vertexAttribPointer(a_tc3, 2, gl.FLOAT, false, 4*8, 4*(2+2));
-//  gl.vertexAttribPointer(a_tc4, 2, gl.FLOAT, false, 4*8, 4*(2+2+2));
-
-  // A vertex buffer that specifies which texture to use for a stamp.
-  // One byte per entry.
-  const tu_vbo = gl.createBuffer();
-  gl.bindBuffer(gl.ARRAY_BUFFER, tu_vbo);
-  gl.enableVertexAttribArray(a_tex);
-  gl.vertexAttribIPointer(a_tex, 1, gl.UNSIGNED_BYTE, false, 0, 0);
-  gl.vertexAttribDivisor(a_tex, 1);
-
-  // A vertex buffer that specifies the multiplicative color for a stamp.
-  // One 32 bit int per entry.
-  const tint_vbo = gl.createBuffer();
-  gl.bindBuffer(gl.ARRAY_BUFFER, tint_vbo);
-  gl.enableVertexAttribArray(a_tint);
-  gl.vertexAttribIPointer(a_tint, 1, gl.UNSIGNED_INT, false, 0, 0);
-  gl.vertexAttribDivisor(a_tint, 1);
-
-  window.gafr_stampSetup = function (maxStamps, maxTextures, _vinfo, _tcs, _tex, _stampTint)
-  {
-    vinfo = _vinfo;
-    tcs = _tcs;
-    tex = _tex;
 
+  // Makes a vertex array object along with its own set of per-stamp
+  // buffers.  The main stamp batch uses one of these, and each part of
+  // each static batch gets its own.
+  function makeStampVAO ()
+  {
+    const o = {};
+    o.vao = gl.createVertexArray();
+    gl.bindVertexArray(o.vao);
+
+    gl.bindBuffer(gl.ARRAY_BUFFER, coord_vbo);
+    // Set up how the attributes are stored/fetched in/from the VBO
+    // two components, which are floats, don't normalize, tightly packed, starting at beginning
+    gl.enableVertexAttribArray(a_coord);
+    gl.vertexAttribPointer(a_coord, 2, gl.FLOAT, false, 0, 0);
+
+    // All the per-stamp data lives in one buffer, one record per stamp:
+    // pinx,piny
+    // sizex,sizey
+    // posx,posy
+    // sin,cos
+    // u0,v0,u1,v1
+    // tint+texture unit (see a_tint in the shader)
+    o.vbo = gl.createBuffer();
+    gl.bindBuffer(gl.ARRAY_BUFFER, o.vbo);
+    for (const a of stampAttribs)
+    {
+      gl.enableVertexAttribArray(a);
+      gl.vertexAttribDivisor(a, 1);
+    }
+    pointStampAttribs(0);
 
-    stampTint = new Uint32Array(_stampTint.buffer);
+    return o;
   }
 
-  window.gafr_stampDraw = function (numStamps, numTextures)
-  {
-    if (vinfo == null) return;
-    gl.bindVertexArray(vao);
+  const stampAttribs = [a_pin, a_size, a_pos, a_rotation, a_tc1, a_tc2, a_tint];
 
-    gl.bindBuffer(gl.ARRAY_BUFFER, quad_vbo);
-    gl.bufferData(gl.ARRAY_BUFFER, vinfo, usage, ARRAY_OFF, numStamps * 8);
+  // Points the per-stamp attributes at records starting at the given byte
+  // offset in the currently bound buffer (and VAO).
+  function pointStampAttribs (byteOffset)
+  {
+    const stride = 4*RECORD_SIZE;
+    for (let i = 0; i < stampAttribs.length; ++i)
+      gl.vertexAttribPointer(stampAttribs[i], 2, gl.FLOAT, false, stride, byteOffset + 4*2*i);
+  }
 
-    gl.bindBuffer(gl.ARRAY_BUFFER, tc_vbo);
-    gl.bufferData(gl.ARRAY_BUFFER, tcs, usage, ARRAY_OFF, numStamps * 4/*8!*/);
+  function deleteStampVAO (o)
+  {
+    gl.deleteBuffer(o.vbo);
+    gl.deleteVertexArray(o.vao);
+  }
 
-    gl.bindBuffer(gl.ARRAY_BUFFER, tu_vbo);
-    gl.bufferData(gl.ARRAY_BUFFER, tex, usage, ARRAY_OFF, numStamps);
+  // Copies stamp data from a CheerpJ array into a VAO's buffer.
+  function uploadStamps (o, usage, data, numStamps)
+  {
+    gl.bindBuffer(gl.ARRAY_BUFFER, o.vbo);
+    gl.bufferData(gl.ARRAY_BUFFER, data, usage, ARRAY_OFF, numStamps * RECORD_SIZE);
+  }
 
-    gl.bindBuffer(gl.ARRAY_BUFFER, tint_vbo);
-    gl.bufferData(gl.ARRAY_BUFFER, stampTint, usage, ARRAY_OFF, numStamps*1);
+  // Draws the stamps in a VAO, offset by dx,dy.
+  function drawStamps (o, numStamps, numTextures, dx, dy)
+  {
+    gl.bindVertexArray(o.vao);
 
-    //console.log(tcs[1],tcs[2],tcs[3],tcs[4],tcs[5],tcs[6],tcs[7],tcs[8]);
-    //console.log("stamps:",numStamps," textures:",numTextures, vinfo.length, tcs.length, tex.length);
+    //console.log("stamps:",numStamps," textures:",numTextures);
     gl.useProgram(program);
 
     if (numTextures > 0) gl.uniform1i(u_sampler0, 0);
@@ -457,13 +447,178 @@ void main ()
     if (numTextures > 4) gl.uniform1i(u_sampler4, 4);
     if (numTextures > 5) gl.uniform1i(u_sampler5, 5);
 
-    gl.uniform2f(u_canvsize, gl.canvas.width, gl.canvas.height);
+    if (target === null)
+      gl.uniform2f(u_canvsize, gl.canvas.width, gl.canvas.height);
+    else
+      gl.uniform2f(u_canvsize, target._gafrx_w, target._gafrx_h);
+    gl.uniform1i(u_to_texture, (target === null) ? 0 : 1);
+    gl.uniform2f(u_offset, dx, dy);
+    gl.uniform3f(u_view_x, view[0], view[1], view[2]);
+    gl.uniform3f(u_view_y, view[3], view[4], view[5]);
 
     gl.drawArraysInstanced(gl.TRIANGLE_STRIP, 0/*offset*/, 4, numStamps);
   }
+
+  // The main batch's buffer is allocated once (well, again if the batch
+  // capacity grows) and used as a ring.  Each flush's records are written
+  // with bufferSubData just past the previous flush's, so we never write
+  // over data that a draw the GPU may still be working on is using.  When
+  // we get to the end, we orphan the buffer (which gives us fresh storage
+  // without waiting on the old one) and start over from the beginning.
+  // The buffer holds this many full batches.
+  const RING_BATCHES = 4;
+  const batch = makeStampVAO();
+  let ringBytes = 0;
+  let ringPos = 0; // byte offset of the next write
+
+  window.gafr_stampSetup = function (maxStamps, maxTextures, _data)
+  {
+    stampData = _data;
+
+    const needed = maxStamps * RECORD_SIZE * 4 * RING_BATCHES;
+    if (needed > ringBytes)
+    {
+      ringBytes = needed;
+      gl.bindBuffer(gl.ARRAY_BUFFER, batch.vbo);
+      gl.bufferData(gl.ARRAY_BUFFER, ringBytes, gl.DYNAMIC_DRAW);
+      ringPos = 0;
+    }
+  }
+
+  window.gafr_stampDraw = function (numStamps, numTextures)
+  {
+    if (stampData == null) return;
+    const bytes = numStamps * RECORD_SIZE * 4;
+
+    gl.bindVertexArray(batch.vao);
+    gl.bindBuffer(gl.ARRAY_BUFFER, batch.vbo);
+    if (ringPos + bytes > ringBytes)
+    {
+      gl.bufferData(gl.ARRAY_BUFFER, ringBytes, gl.DYNAMIC_DRAW); // Orphan
+      ringPos = 0;
+    }
+    gl.bufferSubData(gl.ARRAY_BUFFER, ringPos, stampData, ARRAY_OFF, numStamps * RECORD_SIZE);
+    pointStampAttribs(ringPos);
+    ringPos += bytes;
+
+    drawStamps(batch, numStamps, numTextures, 0, 0);
+  }
+
+  // Sets the camera transform used by subsequent draws.  The canvas
+  // position of world point x,y is (a*x+b*y+tx, c*x+d*y+ty).
+  window.gafr_stampSetView = function (a, b, tx, c, d, ty)
+  {
+    view[0] = a; view[1] = b; view[2] = tx;
+    view[3] = c; view[4] = d; view[5] = ty;
+  }
+
+  // Static batches are uploaded once into their own buffers.  A batch
+  // may have several parts (each with its own set of textures), so we
+  // keep one VAO per part on the Java object.
+  window.gafr_staticBatchUpload = function (sb, part, _data, numStamps)
+  {
+    if (sb._gafrx_parts === undefined) sb._gafrx_parts = [];
+    let o = sb._gafrx_parts[part];
+    if (o === undefined) o = sb._gafrx_parts[part] = makeStampVAO();
+    uploadStamps(o, gl.STATIC_DRAW, _data, numStamps);
+  }
+
+  window.gafr_staticBatchDraw = function (sb, part, numStamps, numTextures, dx, dy)
+  {
+    if (sb._gafrx_parts === undefined) return;
+    drawStamps(sb._gafrx_parts[part], numStamps, numTextures, dx, dy);
+  }
+
+  window.gafr_staticBatchDelete = function (sb)
+  {
+    if (sb._gafrx_parts === undefined) return;
+    for (const o of sb._gafrx_parts) deleteStampVAO(o);
+    sb._gafrx_parts = undefined;
+  }
+
+  // A render texture is a texture with a framebuffer attached.  While one
+  // is bound, stamps are drawn into it instead of onto the canvas.
+  window.gafr_renderTargetCreate = function (t, w, h)
+  {
+    t._gafrx_id = gl.createTexture();
+    t._gafrx_w = w;
+    t._gafrx_h = h;
+    gl.activeTexture(gl.TEXTURE0 + 7);
+    gl.bindTexture(gl.TEXTURE_2D, t._gafrx_id);
+    gl.texImage2D(gl.TEXTURE_2D, 0, gl.RGBA, w, h, 0, gl.RGBA, gl.UNSIGNED_BYTE, null);
+
+    t._gafrx_fb = gl.createFramebuffer();
+    gl.bindFramebuffer(gl.FRAMEBUFFER, t._gafrx_fb);
+    gl.framebufferTexture2D(gl.FRAMEBUFFER, gl.COLOR_ATTACHMENT0, gl.TEXTURE_2D, t._gafrx_id, 0);
+    gl.bindFramebuffer(gl.FRAMEBUFFER, (target === null) ? null : target._gafrx_fb);
+  }
+
+  window.gafr_renderTargetBind = function (t)
+  {
+    target = t;
+    if (t === null)
+    {
+      gl.bindFramebuffer(gl.FRAMEBUFFER, null);
+      gl.viewport(0, 0, gl.drawingBufferWidth, gl.drawingBufferHeight);
+      gl.blendFunc(gl.SRC_ALPHA, gl.ONE_MINUS_SRC_ALPHA);
+    }
+    else
+    {
+      gl.bindFramebuffer(gl.FRAMEBUFFER, t._gafrx_fb);
+      gl.viewport(0, 0, t._gafrx_w, t._gafrx_h);
+      // Keep the texture's alpha meaningful, so it can be drawn over
+      // other things later.
+      gl.blendFuncSeparate(gl.SRC_ALPHA, gl.ONE_MINUS_SRC_ALPHA,
+                           gl.ONE, gl.ONE_MINUS_SRC_ALPHA);
+    }
+  }
+
+  // Clears the bound render texture without disturbing the clear color
+  // used for the canvas.
+  window.gafr_renderTargetClear = function (r, g, b, a)
+  {
+    const old = gl.getParameter(gl.COLOR_CLEAR_VALUE);
+    gl.clearColor(b, g, r, a); // Swizzled; see u_to_texture
+    gl.clear(gl.COLOR_BUFFER_BIT);
+    gl.clearColor(old[0], old[1], old[2], old[3]);
+  }
+
+  window.gafr_renderTargetDelete = function (t)
+  {
+    if (t._gafrx_fb === undefined) return;
+    gl.deleteFramebuffer(t._gafrx_fb);
+    gl.deleteTexture(t._gafrx_id);
+    t._gafrx_fb = undefined;
+  }
 };
 
 
+
+// Uniform locations are objects, which don't fit through an int native,
+// so they're kept here and Java gets the index.  Java looks each one up
+// only once per program (see Gl.Program), so this doesn't grow much.
+window.gafr_uniformLocations = [];
+
+function gafr_getUniformLocation (program, name)
+{
+  const loc = gl.getUniformLocation(program, name);
+  if (loc === null) return -1;
+  gafr_uniformLocations.push(loc);
+  return gafr_uniformLocations.length - 1;
+}
+
+// Sets an array uniform of float, vec2, vec3, or vec4.
+function gafr_uniformfv (loc, components, data, offset, count)
+{
+  const l = gafr_uniformLocations[loc];
+  const off = offset + 1; // +1 to skip cheerpj type info
+  const n = components * count;
+  if (components == 1) gl.uniform1fv(l, data, off, n);
+  else if (components == 2) gl.uniform2fv(l, data, off, n);
+  else if (components == 3) gl.uniform3fv(l, data, off, n);
+  else gl.uniform4fv(l, data, off, n);
+}
+
 //var _sounds_pending = 0;
 function gafr_loadSound (snd, data, format)
 {
@@ -1,7 +1,7 @@
 set -e
 echo "Checking for native differences..."
-grep _CHEERPJ_COMPRESS native_stubs/GaFr/GFN_native.js | sort > .nat_stub
-grep _CHEERPJ_COMPRESS native/GaFr/GFN_native.js | sort | grep -v -e '^//' > .nat_real
+grep _CHEERPJ_COMPRESS native_stubs/GaFr/GFNative_native.js | sort > .nat_stub
+grep _CHEERPJ_COMPRESS native/GaFr/GFNative_native.js | sort | grep -v -e '^//' > .nat_real
 if ! cmp --silent .nat_real .nat_stub; then
   echo "Identifying differences in natives..."
   colordiff .nat_real .nat_stub
@@ -0,0 +1,220 @@
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative5beginEN4java4lang6ObjectIIEV)(a0,a1,a2,p)
+{
+  return gafr_begin(a0, a1, a2);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative13consoleLogObjEN4java4lang6ObjectEV)(a0,p)
+{
+  console.log(a0);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative8debugSetEN4java4lang6ObjectEV)(a0,p)
+{
+  window.java_debug = a0;
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative13setCanvasSizeEIIEV)(a0,a1,p)
+{
+  glcanv.width = a0;
+  glcanv.height = a1;
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative14getCanvasWidthEVEV)(p)
+{
+  return glcanv.width;
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative15getCanvasHeightEVEV)(p)
+{
+  return glcanv.height;
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative16gl_createTextureEN4GaFr9GFTextureEV)(a0,p)
+{
+  a0._gafrx_id = gl.createTexture();
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative16gl_deleteTextureEN4GaFr9GFTextureEV)(a0,p)
+{
+  gl.deleteTexture(a0._gafrx_id);
+  a0._gafrx_id = null;
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative16gl_texParameteriEIIIEV)(a0,a1,a2,p)
+{
+  gl.texParameteri(a0, a1, a2);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative16gl_activeTextureEIEV)(a0,p)
+{
+  gl.activeTexture(a0);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative14gl_bindTextureEIN4GaFr9GFTextureEV)(a0,a1,p)
+{
+  gl.bindTexture(a0, a1._gafrx_id);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative13gl_texImage2DEIIIIIAIIEV)(a0,a1,a2,a3,a4,a5,a6,p)
+{
+  gl.texImage2D(gl.TEXTURE_2D,
+                a0,
+                a1,
+                a2, a3, 0,
+                a4,
+                gl.UNSIGNED_BYTE,
+                new Uint8Array(a5.buffer, (a6+1)*4)); /* +1 to skip cheerpj type info */
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative16gl_texSubImage2DEIIIIIIAIIIEV)(a0,a1,a2,a3,a4,a5,a6,a7,a8,p)
+{
+  // a8 is the distance between rows in the source, so a rectangle can be
+  // uploaded straight out of a bigger image
+  gl.pixelStorei(gl.UNPACK_ROW_LENGTH, a8);
+  gl.texSubImage2D(gl.TEXTURE_2D,
+                   a0,
+                   a1, a2,
+                   a3, a4,
+                   a5,
+                   gl.UNSIGNED_BYTE,
+                   new Uint8Array(a6.buffer, (a7+1)*4)); /* +1 to skip cheerpj type info */
+  gl.pixelStorei(gl.UNPACK_ROW_LENGTH, 0);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative17gl_generateMipmapEIEV)(a0,p)
+{
+  gl.generateMipmap(a0);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative21gl_getUniformLocationEN4GaFr10Gl$ProgramN4java4lang6StringEI)(a0,a1,p)
+{
+  return gafr_getUniformLocation(a0._gafrx_id, cjStringJavaToJs(a1));
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative23gl_getAttributeLocationEN4GaFr10Gl$ProgramN4java4lang6StringEI)(a0,a1,p)
+{
+  return gl.getAttribLocation(a0._gafrx_id, cjStringJavaToJs(a1));
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative12gl_uniform2fEIFFEV)(a0,a1,a2,p)
+{
+  return gl.uniform2f(gafr_uniformLocations[a0], a1, a2);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative12gl_uniform1iEIIEV)(a0,a1,p)
+{
+  return gl.uniform1i(gafr_uniformLocations[a0], a1);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative12gl_uniform1fEIFEV)(a0,a1,p)
+{
+  return gl.uniform1f(gafr_uniformLocations[a0], a1);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative12gl_uniform3fEIFFFEV)(a0,a1,a2,a3,p)
+{
+  return gl.uniform3f(gafr_uniformLocations[a0], a1, a2, a3);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative12gl_uniform4fEIFFFFEV)(a0,a1,a2,a3,a4,p)
+{
+  return gl.uniform4f(gafr_uniformLocations[a0], a1, a2, a3, a4);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative12gl_uniformfvEIIAFIIEV)(a0,a1,a2,a3,a4,p)
+{
+  gafr_uniformfv(a0, a1, a2, a3, a4);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative13gl_uniform1ivEIAIIIEV)(a0,a1,a2,a3,p)
+{
+  /* +1 to skip cheerpj type info */
+  gl.uniform1iv(gafr_uniformLocations[a0], a1, a2+1, a3);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative19gl_uniformMatrix3fvEIAFIEV)(a0,a1,a2,p)
+{
+  gl.uniformMatrix3fv(gafr_uniformLocations[a0], false, a1, a2+1, 9);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative13gl_useProgramEN4GaFr10Gl$ProgramEV)(a0,p)
+{
+  return gl.useProgram(a0._gafrx_id);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative27gl_createProgramFromSourcesEN4GaFr10Gl$ProgramN4java4lang6StringN4java4lang6StringEV)(a0,a1,a2,p)
+{
+  a0._gafrx_id = webglUtils.createProgramFromSources(gl, [cjStringJavaToJs(a1),
+                                                          cjStringJavaToJs(a2)]);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative13gl_clearColorEFFFFEV)(a0,a1,a2,a3,p)
+{
+  return gl.clearColor(a0,a1,a2,a3);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative8gl_clearEIEV)(a0,p)
+{
+  return gl.clear(a0);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative11gl_viewportEIIIIEV)(a0,a1,a2,a3,p)
+{
+  gl.viewport(a0, a1, a2, a3);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative18gl_viewportDefaultEVEV)(p)
+{
+  gl.viewport(0, 0, gl.drawingBufferWidth, gl.drawingBufferHeight);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative10stampSetupEIIAFEV)(a0,a1,a2,p)
+{
+  gafr_stampSetup(a0,a1,a2);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative9stampDrawEIIEV)(a0,a1,p)
+{
+  gafr_stampDraw(a0,a1);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative12stampSetViewEFFFFFFEV)(a0,a1,a2,a3,a4,a5,p)
+{
+  gafr_stampSetView(a0,a1,a2,a3,a4,a5);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative17staticBatchUploadEN4GaFr13GFStaticBatchIAFIEV)(a0,a1,a2,a3,p)
+{
+  gafr_staticBatchUpload(a0,a1,a2,a3);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative15staticBatchDrawEN4GaFr13GFStaticBatchIIIFFEV)(a0,a1,a2,a3,a4,a5,p)
+{
+  gafr_staticBatchDraw(a0,a1,a2,a3,a4,a5);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative17staticBatchDeleteEN4GaFr13GFStaticBatchEV)(a0,p)
+{
+  gafr_staticBatchDelete(a0);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative18renderTargetCreateEN4GaFr9GFTextureIIEV)(a0,a1,a2,p)
+{
+  gafr_renderTargetCreate(a0,a1,a2);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative16renderTargetBindEN4GaFr9GFTextureEV)(a0,p)
+{
+  gafr_renderTargetBind(a0);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative17renderTargetClearEFFFFEV)(a0,a1,a2,a3,p)
+{
+  gafr_renderTargetClear(a0,a1,a2,a3);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative18renderTargetDeleteEN4GaFr9GFTextureEV)(a0,p)
+{
+  gafr_renderTargetDelete(a0);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative9loadSoundEN4GaFr7GFSoundABN4java4lang6StringEV)(a0,a1,a2,p)
+{
+  gafr_loadSound(a0, a1, a2);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative9playSoundEN4GaFr7GFSoundEV)(a0,p)
+{
+  a0._gafrx_id.play();
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative9setVolumeEN4GaFr7GFSoundFEV)(a0,a1,p)
+{
+  a0._gafrx_id.volume(a1);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative10pauseSoundEN4GaFr7GFSoundEV)(a0,p)
+{
+  a0._gafrx_id.pause();
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative9stopSoundEN4GaFr7GFSoundEV)(a0,p)
+{
+  a0._gafrx_id.stop();
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative14getGamepadDataEIAFAZAIEZ)(a0,a1,a2,a3,p)
+{
+  return gafr_getGamepadData(a0, a1, a2, a3);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative14setCursorStyleEN4java4lang6StringEV)(a0,p)
+{
+  return gafr_setCursorStyle(a0);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative8setTitleEN4java4lang6StringEV)(a0,p)
+{
+  return gafr_setTitle(a0);
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative9initEarlyEVEV)(p)
+{
+  return gafr_initEarly();
+}
+function _CHEERPJ_COMPRESS(ZN4GaFr8GFNative15gl_getParameterEIEI)(a0,p)
+{
+  return gl.getParameter(a0);
+}